@@ -0,0 +1,45 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BufferPool {
+    // reusing direct buffers so network code doesn't allocate one per request
+    private final ConcurrentLinkedQueue<ByteBuffer> free;
+    private final AtomicInteger pooled;
+    private final int bufferSize;
+    private final int maxPooled;
+    
+    // creating a pool of buffers of one size, keeping at most maxPooled idle ones
+    public BufferPool(int bufferSize, int maxPooled) {
+        this.free = new ConcurrentLinkedQueue<>();
+        this.pooled = new AtomicInteger();
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+    
+    // taking a cleared buffer, allocating a new one only when none are idle
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = free.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooled.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+    
+    // handing a buffer back, dropping it if the pool is already full
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize) return;
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        free.offer(buffer);
+    }
+    
+    // getting the size of every buffer in this pool
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -0,0 +1,126 @@
+import java.io.Closeable;
+
+public class CheckpointScheduler implements Closeable {
+    // saving snapshots on a background thread so neither the Swing event thread nor request
+    // threads ever wait for a full save
+    //
+    // a checkpoint runs once the interval has passed with at least one change, as soon as the
+    // change limit is reached, or when one is asked for. with a journal open nothing is lost in
+    // a crash either way; without one a crash loses at most one interval of changes
+    //
+    // finished trips are also moved to the archive once per interval, just before a checkpoint
+    // would run, so snapshots only carry the hot trips
+    public static final long DEFAULT_INTERVAL_SECONDS = 60;
+    public static final long DEFAULT_CHANGE_LIMIT = 10000;
+
+    // how often the change count is checked between checkpoints
+    private static final long POLL_MILLIS = 1000;
+
+    private final RideLinkMatcher system;
+    private final String snapshotFile;
+    private final long intervalMillis;
+    private final long changeLimit;
+    private final Object lock = new Object();
+    private final Thread worker;
+
+    // also refreshing users.csv and trips.csv after each snapshot
+    private volatile boolean exportCsv;
+
+    private boolean requested;
+    private boolean closed;
+    private long savedChanges;
+    private long lastSaveMillis;
+    private long lastArchiveMillis;
+
+    // starting a scheduler with the default interval and change limit
+    public CheckpointScheduler(RideLinkMatcher system, String snapshotFile) {
+        this(system, snapshotFile, DEFAULT_INTERVAL_SECONDS, DEFAULT_CHANGE_LIMIT);
+    }
+
+    // starting a scheduler that saves every intervalSeconds, or sooner after changeLimit changes
+    public CheckpointScheduler(RideLinkMatcher system, String snapshotFile, long intervalSeconds, long changeLimit) {
+        this.system = system;
+        this.snapshotFile = snapshotFile;
+        this.intervalMillis = intervalSeconds * 1000;
+        this.changeLimit = changeLimit;
+        this.savedChanges = system.getChangeCount();
+        this.lastSaveMillis = System.currentTimeMillis();
+        this.worker = new Thread(this::run, "ridelink-checkpoint");
+        this.worker.setDaemon(true);
+        this.worker.setPriority(Thread.MIN_PRIORITY);
+        this.worker.start();
+    }
+
+    // turning the CSV export on or off
+    public void setExportCsv(boolean exportCsv) {
+        this.exportCsv = exportCsv;
+    }
+
+    // asking for a checkpoint now without waiting for it
+    public void requestCheckpoint() {
+        synchronized (lock) {
+            requested = true;
+            lock.notifyAll();
+        }
+    }
+
+    // stopping the background thread and saving anything changed since the last checkpoint
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkpoint();
+    }
+
+    // waiting until a checkpoint is due, then running it outside the lock
+    private void run() {
+        while (true) {
+            synchronized (lock) {
+                try {
+                    while (!closed && !requested && !due()) {
+                        lock.wait(POLL_MILLIS);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (closed) return;
+                requested = false;
+            }
+            if (System.currentTimeMillis() - lastArchiveMillis >= intervalMillis) {
+                lastArchiveMillis = System.currentTimeMillis();
+                system.archiveTrips();
+            }
+            checkpoint();
+        }
+    }
+
+    // checking whether the interval or the change limit has been reached
+    private boolean due() {
+        long now = System.currentTimeMillis();
+        long unsaved = system.getChangeCount() - savedChanges;
+        return unsaved >= changeLimit ||
+               (unsaved > 0 && now - lastSaveMillis >= intervalMillis) ||
+               now - lastArchiveMillis >= intervalMillis;
+    }
+
+    // saving a snapshot if anything changed since the last one; changes made while it is
+    // being saved count towards the next checkpoint
+    private void checkpoint() {
+        long changes = system.getChangeCount();
+        if (changes == savedChanges) return;
+        lastSaveMillis = System.currentTimeMillis();
+        if (!system.saveSnapshot(snapshotFile)) return;
+        savedChanges = changes;
+        if (exportCsv) {
+            system.saveUsersToCSV();
+            system.saveTripsToCSV();
+        }
+    }
+}
@@ -0,0 +1,382 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class CsvIngest {
+    // reading users.csv and trips.csv by splitting them into line-aligned chunks,
+    // memory-mapping each chunk and parsing the chunks in parallel straight from the bytes
+    //
+    // numbers and dates are parsed from the bytes without making a String first, and
+    // repeated values (locations, drivers, genders, car models) are looked up by their bytes
+    // in a per-chunk cache, so only values that are new to a chunk get decoded
+    private static final int CHUNK_BYTES = 16 * 1024 * 1024;
+    private static final int MAX_FIELDS = 16;
+
+    // the files are written with FileWriter, so they are read back in the same default charset
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    // counting lines that could not be parsed during the last read
+    private final AtomicInteger skipped = new AtomicInteger();
+
+    // reading every user in file order
+    public ArrayList<User> readUsers(Path file) throws IOException {
+        return readChunks(file, (line, out) -> {
+            String type = line.string(1);
+            String id = line.string(0);
+            String name = line.string(2);
+            String contact = line.string(3);
+            int age = line.parseInt(4);
+            String gender = line.cached(5);
+
+            if (type.equals("Driver")) {
+                out.add(new Driver(id, name, contact, age, gender, line.cached(6), line.string(7),
+                                   line.parseInt(8), line.parseInt(9)));
+            } else if (type.equals("Rider")) {
+                Rider rider = new Rider(id, name, contact, age, gender, line.cached(10));
+                rider.updateSavings(line.parseDecimal(11));
+                rider.addToDistanceCommuted(line.parseDecimal(12));
+                out.add(rider);
+            }
+        });
+    }
+
+    // reading every trip whose driver can be found, in file order
+    public ArrayList<Trip> readTrips(Path file, Function<String, User> users) throws IOException {
+        return readChunks(file, (line, out) -> {
+            User user = line.cachedValue(1, users);
+            if (!(user instanceof Driver)) return;
+            Location origin = line.location(2, 3);
+            Location destination = line.location(4, 5);
+            out.add(new Trip(line.string(0), (Driver) user, origin, destination, line.parseDateTime(6)));
+        });
+    }
+
+    // getting how many lines the last read skipped
+    public int getSkippedLines() {
+        return skipped.get();
+    }
+
+    // parsing every chunk in parallel, then joining the results back in file order
+    private <T> ArrayList<T> readChunks(Path file, LineParser<T> parser) throws IOException {
+        skipped.set(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            List<ArrayList<T>> parts = IntStream.range(0, bounds.length - 1).parallel()
+                .mapToObj(i -> parseChunk(channel, bounds[i], bounds[i + 1], i == 0, parser))
+                .collect(Collectors.toList());
+
+            int total = 0;
+            for (ArrayList<T> part : parts) total += part.size();
+            ArrayList<T> result = new ArrayList<>(total);
+            for (ArrayList<T> part : parts) result.addAll(part);
+            return result;
+        }
+    }
+
+    // finding chunk edges roughly CHUNK_BYTES apart, each moved just past the next newline
+    private static long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(64 * 1024);
+        long position = CHUNK_BYTES;
+        while (position < size) {
+            long edge = -1;
+            long scan = position;
+            while (edge < 0 && scan < size) {
+                probe.clear();
+                int read = channel.read(probe, scan);
+                if (read <= 0) break;
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        edge = scan + i + 1;
+                        break;
+                    }
+                }
+                scan += read;
+            }
+            if (edge < 0 || edge >= size) break;
+            bounds.add(edge);
+            position = edge + CHUNK_BYTES;
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) result[i] = bounds.get(i);
+        return result;
+    }
+
+    // mapping one chunk and handing each line to the parser
+    private <T> ArrayList<T> parseChunk(FileChannel channel, long start, long end,
+                                        boolean hasHeader, LineParser<T> parser) {
+        ArrayList<T> out = new ArrayList<>();
+        if (end <= start) return out;
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not map " + start + ".." + end + ": " + e.getMessage(), e);
+        }
+
+        Line line = new Line(buffer);
+        boolean header = hasHeader;
+        while (line.next()) {
+            if (line.isBlank()) continue;
+            if (header) {
+                header = false;
+                continue;
+            }
+            try {
+                parser.parse(line, out);
+            } catch (RuntimeException e) {
+                skipped.incrementAndGet();
+            }
+        }
+        return out;
+    }
+
+    // turning one split line into zero or more results
+    private interface LineParser<T> {
+        void parse(Line line, ArrayList<T> out);
+    }
+
+    // a cursor over the lines of one mapped chunk, with the current line's field offsets
+    private static class Line {
+        private final ByteBuffer buffer;
+        private final int[] fieldStart = new int[MAX_FIELDS];
+        private final int[] fieldEnd = new int[MAX_FIELDS];
+        private int fieldCount;
+        private int position;
+        private byte[] scratch = new byte[256];
+        private final ByteCache cache = new ByteCache();
+
+        Line(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        // moving to the next line and recording where each comma-separated field sits
+        boolean next() {
+            int limit = buffer.limit();
+            if (position >= limit) return false;
+            fieldCount = 0;
+            fieldStart[0] = position;
+            int i = position;
+            while (i < limit) {
+                byte b = buffer.get(i);
+                if (b == '\n') break;
+                if (b == ',' && fieldCount < MAX_FIELDS - 1) {
+                    fieldEnd[fieldCount++] = i;
+                    fieldStart[fieldCount] = i + 1;
+                }
+                i++;
+            }
+            int lineEnd = i;
+            if (lineEnd > fieldStart[fieldCount] && buffer.get(lineEnd - 1) == '\r') lineEnd--;
+            fieldEnd[fieldCount] = lineEnd;
+            fieldCount++;
+            position = i + 1;
+            return true;
+        }
+
+        boolean isBlank() {
+            for (int i = fieldStart[0]; i < fieldEnd[fieldCount - 1]; i++) {
+                byte b = buffer.get(i);
+                if (b != ' ' && b != '\t' && b != ',') return false;
+            }
+            return true;
+        }
+
+        private void check(int field) {
+            if (field >= fieldCount) throw new IllegalArgumentException("Missing field " + field);
+        }
+
+        // decoding a field that has to become its own String, such as an id or a name
+        String string(int field) {
+            check(field);
+            int length = fieldEnd[field] - fieldStart[field];
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(fieldStart[field], scratch, 0, length);
+            return new String(scratch, 0, length, CHARSET);
+        }
+
+        // decoding a field once per chunk and sharing the String for every repeat
+        String cached(int field) {
+            return cachedValue(field, value -> value);
+        }
+
+        // looking a field up by its bytes, computing the value from the decoded text on a miss
+        @SuppressWarnings("unchecked")
+        <V> V cachedValue(int field, Function<String, V> compute) {
+            check(field);
+            int tag = field;
+            Object value = cache.get(buffer, tag, fieldStart[field], fieldEnd[field], -1, -1);
+            if (value == null) {
+                value = compute.apply(string(field));
+                if (value != null) cache.put(buffer, tag, fieldStart[field], fieldEnd[field], -1, -1, value);
+            }
+            return (V) value;
+        }
+
+        // getting the shared Location for a name and area field pair
+        Location location(int nameField, int areaField) {
+            check(areaField);
+            int tag = -1 - nameField;
+            Object value = cache.get(buffer, tag, fieldStart[nameField], fieldEnd[nameField],
+                                     fieldStart[areaField], fieldEnd[areaField]);
+            if (value == null) {
+                value = LocationRegistry.intern(string(nameField), string(areaField));
+                cache.put(buffer, tag, fieldStart[nameField], fieldEnd[nameField],
+                          fieldStart[areaField], fieldEnd[areaField], value);
+            }
+            return (Location) value;
+        }
+
+        int parseInt(int field) {
+            check(field);
+            return (int) parseDigits(fieldStart[field], fieldEnd[field]);
+        }
+
+        // reading a plain decimal like 12.50 as saved with %.2f, falling back for anything else
+        double parseDecimal(int field) {
+            check(field);
+            int start = fieldStart[field];
+            int end = fieldEnd[field];
+            int dot = -1;
+            for (int i = start; i < end; i++) {
+                byte b = buffer.get(i);
+                if (b == '.' && dot < 0) {
+                    dot = i;
+                } else if ((b < '0' || b > '9') && !(b == '-' && i == start)) {
+                    return Double.parseDouble(string(field).trim());
+                }
+            }
+            if (dot < 0) return parseDigits(start, end);
+            long whole = dot == start ? 0 : parseDigits(start, dot);
+            boolean negative = buffer.get(start) == '-';
+            int scaleDigits = end - dot - 1;
+            if (scaleDigits == 0) return whole;
+            if (scaleDigits > 15) return Double.parseDouble(string(field).trim());
+            double fraction = parseDigits(dot + 1, end) / Math.pow(10, scaleDigits);
+            return negative ? whole - fraction : whole + fraction;
+        }
+
+        // reading "yyyy-MM-dd HH:mm" digit by digit
+        LocalDateTime parseDateTime(int field) {
+            check(field);
+            int s = fieldStart[field];
+            if (fieldEnd[field] - s != 16 || buffer.get(s + 4) != '-' || buffer.get(s + 7) != '-'
+                    || buffer.get(s + 10) != ' ' || buffer.get(s + 13) != ':') {
+                throw new IllegalArgumentException("Bad date " + string(field));
+            }
+            return LocalDateTime.of((int) parseDigits(s, s + 4), (int) parseDigits(s + 5, s + 7),
+                                    (int) parseDigits(s + 8, s + 10), (int) parseDigits(s + 11, s + 13),
+                                    (int) parseDigits(s + 14, s + 16));
+        }
+
+        private long parseDigits(int start, int end) {
+            boolean negative = start < end && buffer.get(start) == '-';
+            if (negative) start++;
+            if (start >= end) throw new NumberFormatException("Empty number");
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) throw new NumberFormatException("Bad digit in field");
+                value = value * 10 + digit;
+            }
+            return negative ? -value : value;
+        }
+    }
+
+    // an open-addressing map from one or two byte ranges (plus a tag telling fields apart) to a value,
+    // storing a copy of the key bytes so lookups never decode anything
+    private static class ByteCache {
+        private int[] tags = new int[256];
+        private int[] hashes = new int[256];
+        private byte[][] keys = new byte[256][];
+        private int[] splits = new int[256];
+        private Object[] values = new Object[256];
+        private int size;
+
+        Object get(ByteBuffer buffer, int tag, int start, int end, int start2, int end2) {
+            int hash = hash(buffer, tag, start, end, start2, end2);
+            int mask = values.length - 1;
+            for (int slot = hash & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && tags[slot] == tag
+                        && matches(buffer, keys[slot], splits[slot], start, end, start2, end2)) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        void put(ByteBuffer buffer, int tag, int start, int end, int start2, int end2, Object value) {
+            if ((size + 1) * 2 > values.length) grow();
+            int length = end - start;
+            int length2 = start2 < 0 ? 0 : end2 - start2;
+            byte[] key = new byte[length + length2];
+            buffer.get(start, key, 0, length);
+            if (length2 > 0) buffer.get(start2, key, length, length2);
+            insert(hash(buffer, tag, start, end, start2, end2), tag, key, length, value);
+            size++;
+        }
+
+        private void insert(int hash, int tag, byte[] key, int split, Object value) {
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null) slot = (slot + 1) & mask;
+            hashes[slot] = hash;
+            tags[slot] = tag;
+            keys[slot] = key;
+            splits[slot] = split;
+            values[slot] = value;
+        }
+
+        private void grow() {
+            int[] oldTags = tags;
+            int[] oldHashes = hashes;
+            byte[][] oldKeys = keys;
+            int[] oldSplits = splits;
+            Object[] oldValues = values;
+            int capacity = oldValues.length * 2;
+            tags = new int[capacity];
+            hashes = new int[capacity];
+            keys = new byte[capacity][];
+            splits = new int[capacity];
+            values = new Object[capacity];
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) insert(oldHashes[i], oldTags[i], oldKeys[i], oldSplits[i], oldValues[i]);
+            }
+        }
+
+        private static int hash(ByteBuffer buffer, int tag, int start, int end, int start2, int end2) {
+            int h = tag;
+            for (int i = start; i < end; i++) h = 31 * h + buffer.get(i);
+            h = 31 * h + ',';
+            for (int i = start2; i < end2; i++) h = 31 * h + buffer.get(i);
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean matches(ByteBuffer buffer, byte[] key, int split,
+                                       int start, int end, int start2, int end2) {
+            int length2 = start2 < 0 ? 0 : end2 - start2;
+            if (end - start != split || key.length != split + length2) return false;
+            for (int i = 0; i < split; i++) {
+                if (key[i] != buffer.get(start + i)) return false;
+            }
+            for (int i = 0; i < length2; i++) {
+                if (key[split + i] != buffer.get(start2 + i)) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+public class HierarchicalTimingWheel {
+    // a timing wheel for deadlines hours or days away: level 0 has one slot per tick, and each
+    // level above covers 64 times the span of the one below. a timeout sits in the coarsest
+    // level that can place it and is moved down a level when its slot comes round, so it is
+    // touched at most once per level however far off it is, instead of once per turn of a
+    // single wheel. scheduling, cancelling and expiring are all O(1)
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_COUNT = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOT_COUNT - 1;
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+    private final ArrayDeque<Timeout>[][] levels;
+    private final ConcurrentLinkedQueue<Timeout> pending;
+    private final String name;
+    private final Executor executor;
+
+    private volatile Thread worker;
+    private volatile boolean running;
+    private long startMillis;
+    private long currentTick;
+
+    // creating a wheel with the given tick length; due tasks are handed to the executor,
+    // or run on the wheel's own thread if it is null
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HierarchicalTimingWheel(String name, long tickMillis, Executor executor) {
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.executor = executor;
+        this.levels = new ArrayDeque[LEVELS][SLOT_COUNT];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < SLOT_COUNT; i++) {
+                levels[level][i] = new ArrayDeque<>();
+            }
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+        start();
+    }
+
+    // scheduling a task to run at a wall-clock time in milliseconds; times already past run
+    // on the next tick
+    public Timeout scheduleAt(Runnable task, long deadlineMillis) {
+        Timeout timeout = new Timeout(task, deadlineMillis);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    // scheduling a task to run after the delay
+    public Timeout schedule(Runnable task, long delayMillis) {
+        return scheduleAt(task, System.currentTimeMillis() + Math.max(0, delayMillis));
+    }
+
+    // stopping the worker thread, outstanding timeouts never fire
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+        worker = null;
+    }
+
+    // starting the background thread that turns the wheel
+    private synchronized void start() {
+        running = true;
+        startMillis = System.currentTimeMillis();
+        currentTick = 0;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // advancing one tick at a time until stopped: cascading coarse slots that came round,
+    // placing new timeouts, then running whatever is due now
+    private void run() {
+        while (running) {
+            long nextTickAt = startMillis + (currentTick + 1) * tickMillis;
+            long sleep = nextTickAt - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            currentTick++;
+            cascade();
+            transferPending();
+            expireSlot(levels[0][(int) (currentTick & SLOT_MASK)]);
+        }
+    }
+
+    // when a level's span is used up, emptying the next slot of the level above into the
+    // levels below it
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            if ((currentTick & ((1L << shift) - 1)) != 0) break;
+            ArrayDeque<Timeout> slot = levels[level][(int) ((currentTick >> shift) & SLOT_MASK)];
+            Timeout timeout;
+            while ((timeout = slot.poll()) != null) {
+                if (!timeout.cancelled) place(timeout);
+            }
+        }
+    }
+
+    // placing newly scheduled timeouts
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) continue;
+            timeout.deadlineTick = Math.max(0, (timeout.deadline - startMillis + tickMillis - 1) / tickMillis);
+            place(timeout);
+        }
+    }
+
+    // putting a timeout in the coarsest level whose slots are still ahead of it; timeouts
+    // due now go in the slot about to be expired
+    private void place(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        if (delta <= 0) {
+            levels[0][(int) (currentTick & SLOT_MASK)].add(timeout);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int shift = SLOT_BITS * level;
+        long bucket = timeout.deadlineTick >> shift;
+        if (delta >= 1L << (SLOT_BITS * LEVELS)) {
+            // past the top level's reach: parked in its furthest slot and placed again from there
+            bucket = (currentTick >> shift) + SLOT_MASK;
+        }
+        levels[level][(int) (bucket & SLOT_MASK)].add(timeout);
+    }
+
+    // running every timeout in the current level 0 slot
+    private void expireSlot(ArrayDeque<Timeout> slot) {
+        Timeout timeout;
+        while ((timeout = slot.poll()) != null) {
+            if (timeout.cancelled) continue;
+            timeout.fired = true;
+            try {
+                if (executor != null) {
+                    executor.execute(timeout.task);
+                } else {
+                    timeout.task.run();
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Error in timer task: " + e.getMessage());
+            }
+        }
+    }
+
+    // a scheduled task that can be cancelled before it fires
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long deadlineTick;
+        private volatile boolean cancelled;
+        private volatile boolean fired;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        // cancelling the task, it is dropped the next time its slot is visited
+        public boolean cancel() {
+            if (fired) return false;
+            cancelled = true;
+            return true;
+        }
+
+        public boolean isCancelled() { return cancelled; }
+        public boolean hasFired() { return fired; }
+        public long getDeadline() { return deadline; }
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ImpactCounters {
+    // running totals for the impact report, updated as users are added, trips change status and
+    // savings are credited, so the report reads a few numbers instead of walking every user and trip
+    // each total is striped across cells, so threads updating it at once don't contend
+    private final LongAdder drivers = new LongAdder();
+    private final LongAdder riders = new LongAdder();
+    private final LongAdder pendingTrips = new LongAdder();
+    private final LongAdder activeTrips = new LongAdder();
+    private final LongAdder completedTrips = new LongAdder();
+    private final LongAdder expiredTrips = new LongAdder();
+    private final DoubleAdder moneySaved = new DoubleAdder();
+
+    // counting a new user, along with any savings they already had
+    public void userAdded(User user) {
+        if (user instanceof Driver) {
+            drivers.increment();
+        } else if (user instanceof Rider) {
+            riders.increment();
+            moneySaved.add(((Rider) user).getTotalMoneySaved());
+        }
+    }
+
+    // counting a trip that arrived or left with the given status
+    public void tripAdded(String status) {
+        LongAdder counter = forStatus(status);
+        if (counter != null) counter.increment();
+    }
+
+    public void tripRemoved(String status) {
+        LongAdder counter = forStatus(status);
+        if (counter != null) counter.decrement();
+    }
+
+    // moving a trip from one status count to another
+    public void statusChanged(String previousStatus, String status) {
+        tripRemoved(previousStatus);
+        tripAdded(status);
+    }
+
+    // adding savings credited to a rider
+    public void savingsCredited(double amount) {
+        moneySaved.add(amount);
+    }
+
+    // reading the totals
+    public long getDriverCount() { return drivers.sum(); }
+    public long getRiderCount() { return riders.sum(); }
+    public long getPendingTrips() { return pendingTrips.sum(); }
+    public long getActiveTrips() { return activeTrips.sum(); }
+    public long getCompletedTrips() { return completedTrips.sum(); }
+    public long getExpiredTrips() { return expiredTrips.sum(); }
+    public double getMoneySaved() { return moneySaved.sum(); }
+
+    // finding the counter for a status, or null for statuses the report doesn't show
+    private LongAdder forStatus(String status) {
+        if (status == null) return null;
+        switch (status) {
+            case "Pending": return pendingTrips;
+            case "Active": return activeTrips;
+            case "Completed": return completedTrips;
+            case "Expired": return expiredTrips;
+            default: return null;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+public class Journal implements Closeable {
+    // an append-only log of every change, so a crash loses nothing that was acknowledged
+    // and saving costs the size of the change instead of the size of the data
+    //
+    // each record is [int length][int crc32c][byte type][fields...]; appends from many threads
+    // are gathered by one writer thread into a single write and a single fsync (group commit),
+    // and each caller returns once the batch holding its record is on disk
+    //
+    // a checkpoint rotates the journal: everything written so far is moved to the retired file
+    // (ridelink.journal.old) and appends carry on in a fresh one. once the snapshot taken after
+    // the rotation is safely saved the retired file is deleted; until then both are replayed
+    public static final String DEFAULT_FILE = "ridelink.journal";
+
+    private static final byte DRIVER = 1;
+    private static final byte RIDER = 2;
+    private static final byte TRIP = 3;
+    private static final byte PASSENGER = 4;
+    private static final byte STATUS = 5;
+    private static final byte RIDER_TOTALS = 6;
+    private static final byte ARCHIVED = 7;
+
+    // queued in place of a record to mark where the journal is rotated
+    private static final ByteBuffer ROTATE = ByteBuffer.allocate(0);
+
+    private final Path file;
+    private FileChannel channel;
+    private final Object lock = new Object();
+    private final Thread writer;
+    private ArrayList<ByteBuffer> pending = new ArrayList<>();
+    private long appended;
+    private long durable;
+    private boolean closed;
+    private IOException failure;
+
+    // opening a journal for appending, creating the file if needed
+    public Journal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        StandardOpenOption.APPEND);
+        this.writer = new Thread(this::writeLoop, "ridelink-journal");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // getting the file this journal appends to
+    public Path getFile() {
+        return file;
+    }
+
+    // getting the file a journal's records are moved to when it is rotated
+    public static Path retiredFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".old");
+    }
+
+    // recording a new driver or rider
+    public void userRegistered(User user) {
+        Record record = new Record(user instanceof Driver ? DRIVER : RIDER);
+        record.text(user.getId()).text(user.getName()).text(user.getContactInfo())
+              .number(user.getAge()).text(user.getGender());
+        if (user instanceof Driver) {
+            Driver driver = (Driver) user;
+            record.text(driver.getCarModel()).text(driver.getCarPlateNumber())
+                  .number(driver.getCarCapacity()).number(driver.getYearsExperience());
+        } else if (user instanceof Rider) {
+            record.text(((Rider) user).getPreferredPaymentMethod());
+        }
+        append(record.frame());
+    }
+
+    // recording a posted trip, with its locations as text and its departure in epoch minutes
+    public void tripPosted(Trip trip) {
+        append(new Record(TRIP)
+            .text(trip.getId()).text(trip.getDriver().getId())
+            .text(trip.getOrigin().getName()).text(trip.getOrigin().getArea())
+            .text(trip.getDestination().getName()).text(trip.getDestination().getArea())
+            .minute(trip.getDepartureTime())
+            .frame());
+    }
+
+    // recording a rider taking a seat
+    public void passengerAdded(Trip trip, User rider) {
+        append(new Record(PASSENGER).text(trip.getId()).text(rider.getId()).frame());
+    }
+
+    // recording a status change; a completed trip also records every rider's new totals,
+    // so savings credited on completion survive a restart whichever path completed it
+    public void statusChanged(Trip trip) {
+        ArrayList<ByteBuffer> frames = new ArrayList<>();
+        frames.add(new Record(STATUS).text(trip.getId()).text(trip.getTripStatus()).frame());
+        if (trip.getTripStatus().equals("Completed")) {
+            for (User passenger : trip.getPassengers()) {
+                if (passenger instanceof Rider) {
+                    Rider rider = (Rider) passenger;
+                    frames.add(new Record(RIDER_TOTALS).text(rider.getId())
+                        .decimal(rider.getTotalMoneySaved()).decimal(rider.getTotalDistanceCommuted())
+                        .frame());
+                }
+            }
+        }
+        append(frames.toArray(new ByteBuffer[0]));
+    }
+
+    // moving every record appended so far to the retired file, returning once they are on disk
+    // there; records appended after this call go to a fresh journal
+    public void rotate() throws IOException {
+        synchronized (lock) {
+            if (closed) throw new IOException("journal is closed");
+            pending.add(ROTATE);
+            long mine = ++appended;
+            lock.notifyAll();
+            try {
+                while (durable < mine && failure == null) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while rotating journal");
+            }
+            if (failure != null) throw failure;
+        }
+    }
+
+    // recording trips that moved to the archive, so replaying drops them again
+    public void tripsArchived(List<Trip> trips) {
+        ByteBuffer[] frames = new ByteBuffer[trips.size()];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Record(ARCHIVED).text(trips.get(i).getId()).frame();
+        }
+        append(frames);
+    }
+
+    // queueing frames for the writer and waiting until they are on disk; throws if they could
+    // not be written, so the change is reported as failed instead of silently not saved. once a
+    // write has failed the journal stays failed and every later append throws too
+    private void append(ByteBuffer... frames) {
+        synchronized (lock) {
+            if (failure != null) throw new UncheckedIOException("Error writing journal", failure);
+            if (closed) throw new UncheckedIOException(new IOException("journal is closed"));
+            for (ByteBuffer frame : frames) {
+                pending.add(frame);
+            }
+            long mine = ++appended;
+            lock.notifyAll();
+            
+            // waiting out an interrupt, since returning early would report a change as saved
+            // before it is; the interrupt is passed back to the caller afterwards
+            boolean interrupted = false;
+            while (durable < mine && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+            if (durable < mine) throw new UncheckedIOException("Error writing journal", failure);
+        }
+    }
+
+    // writing whatever has queued up since the last fsync as one batch
+    private void writeLoop() {
+        while (true) {
+            ArrayList<ByteBuffer> batch;
+            long upTo;
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) return;
+                batch = pending;
+                pending = new ArrayList<>();
+                upTo = appended;
+            }
+
+            try {
+                // records before a rotation mark go to the file being retired, the rest to the new one
+                int from = 0;
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.get(i) == ROTATE) {
+                        writeBatch(batch.subList(from, i));
+                        retire();
+                        from = i + 1;
+                    }
+                }
+                writeBatch(batch.subList(from, batch.size()));
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                durable = upTo;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // writing frames in one gathering write and forcing them to disk
+    private void writeBatch(List<ByteBuffer> frames) throws IOException {
+        if (frames.isEmpty()) return;
+        ByteBuffer[] buffers = frames.toArray(new ByteBuffer[0]);
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) remaining += buffer.remaining();
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+        channel.force(false);
+    }
+
+    // moving the journal to the retired file and starting a fresh one; if an earlier retired
+    // file is still there (its snapshot never got saved) the journal is added to its end instead
+    private void retire() throws IOException {
+        channel.close();
+        Path retired = retiredFile(file);
+        if (Files.exists(retired)) {
+            try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(retired, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                long size = in.size();
+                long copied = 0;
+                while (copied < size) {
+                    copied += in.transferTo(copied, size - copied, out);
+                }
+                out.force(false);
+            }
+            Files.delete(file);
+        } else {
+            Files.move(file, retired, StandardCopyOption.ATOMIC_MOVE);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                   StandardOpenOption.APPEND);
+    }
+
+    // flushing anything still queued and closing the file
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    // applying every intact record in the file to the matcher, returning how many were read;
+    // a torn record at the end (from a crash mid-write) is cut off so later appends follow good data.
+    // every record is applied only if it isn't already reflected, so replaying on top of a
+    // snapshot that already holds some of the changes is safe
+    public static int replay(Path file, RideLinkMatcher system) throws IOException {
+        if (!Files.exists(file)) return 0;
+        int count = 0;
+        long goodLength = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(8);
+            CRC32C crc = new CRC32C();
+            while (goodLength + 8 <= size) {
+                header.clear();
+                readFully(channel, header, goodLength);
+                int length = header.getInt(0);
+                int checksum = header.getInt(4);
+                if (length <= 0 || goodLength + 8 + length > size) break;
+
+                ByteBuffer body = ByteBuffer.allocate(length);
+                readFully(channel, body, goodLength + 8);
+                crc.reset();
+                crc.update(body.array(), 0, length);
+                if ((int) crc.getValue() != checksum) break;
+
+                apply(new DataInputStream(new ByteArrayInputStream(body.array())), system);
+                goodLength += 8 + length;
+                count++;
+            }
+            if (goodLength < size) {
+                System.out.println("Journal ends with " + (size - goodLength) + " unreadable bytes, cutting them off");
+                channel.truncate(goodLength);
+            }
+        }
+        return count;
+    }
+
+    // turning one record back into the call that made it
+    private static void apply(DataInputStream in, RideLinkMatcher system) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case DRIVER: {
+                String id = in.readUTF();
+                Driver driver = new Driver(id, in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(),
+                                           in.readUTF(), in.readUTF(), in.readInt(), in.readInt());
+                if (system.getUserById(id) == null) system.registerUser(driver);
+                break;
+            }
+            case RIDER: {
+                String id = in.readUTF();
+                Rider rider = new Rider(id, in.readUTF(), in.readUTF(), in.readInt(), in.readUTF(), in.readUTF());
+                if (system.getUserById(id) == null) system.registerUser(rider);
+                break;
+            }
+            case TRIP: {
+                String id = in.readUTF();
+                User driver = system.getUserById(in.readUTF());
+                Location origin = LocationRegistry.intern(in.readUTF(), in.readUTF());
+                Location destination = LocationRegistry.intern(in.readUTF(), in.readUTF());
+                LocalDateTime departure = LocalDateTime.ofEpochSecond(in.readLong() * 60, 0, ZoneOffset.UTC);
+                if (driver instanceof Driver && system.getTripById(id) == null) {
+                    system.postTrip(new Trip(id, (Driver) driver, origin, destination, departure));
+                }
+                break;
+            }
+            case PASSENGER: {
+                Trip trip = system.getTripById(in.readUTF());
+                User rider = system.getUserById(in.readUTF());
+                if (trip != null && rider != null) trip.restorePassenger(rider);
+                break;
+            }
+            case STATUS: {
+                Trip trip = system.getTripById(in.readUTF());
+                String status = in.readUTF();
+                if (trip != null && !trip.getTripStatus().equals(status)) trip.setStatus(status);
+                break;
+            }
+            case RIDER_TOTALS: {
+                User user = system.getUserById(in.readUTF());
+                double saved = in.readDouble();
+                double distance = in.readDouble();
+                if (user instanceof Rider) {
+                    system.restoreRiderTotals((Rider) user, saved, distance);
+                }
+                break;
+            }
+            case ARCHIVED:
+                system.forgetTrip(in.readUTF());
+                break;
+            default:
+                throw new IOException("Unknown journal record type " + type);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Journal ended early");
+        }
+    }
+
+    // building one record's bytes, framed with its length and checksum
+    private static class Record {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte type) {
+            try {
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeByte(type);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Record text(String value) {
+            try {
+                out.writeUTF(value == null ? "" : value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record number(int value) {
+            try {
+                out.writeInt(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record decimal(double value) {
+            try {
+                out.writeDouble(value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        Record minute(LocalDateTime time) {
+            try {
+                out.writeLong(TripIndex.epochMinute(time));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return this;
+        }
+
+        // filling in the length and checksum now that the body is complete
+        ByteBuffer frame() {
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            int length = frame.limit() - 8;
+            CRC32C crc = new CRC32C();
+            crc.update(frame.array(), 8, length);
+            frame.putInt(0, length);
+            frame.putInt(4, (int) crc.getValue());
+            return frame;
+        }
+    }
+}
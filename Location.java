@@ -3,10 +3,16 @@ public class Location {
     private final String name;
     private final String area;
     
+    // ids from LocationRegistry, equal whenever the strings match ignoring case
+    private final int nameId;
+    private final int areaId;
+    
     // creating the new location with name and area
     public Location(String name, String area) {
         this.name = name;
         this.area = area;
+        this.nameId = LocationRegistry.nameId(name);
+        this.areaId = LocationRegistry.areaId(area);
     }
     
     // getting all the location info
@@ -18,10 +24,17 @@ public class Location {
         return area;
     }
     
+    public int getNameId() {
+        return nameId;
+    }
+    
+    public int getAreaId() {
+        return areaId;
+    }
+    
     // checking if two locations are in the same area or are the same place
     public static boolean locationsMatch(Location loc1, Location loc2) {
-        return loc1.getArea().equalsIgnoreCase(loc2.getArea()) || 
-               loc1.getName().equalsIgnoreCase(loc2.getName());
+        return loc1.areaId == loc2.areaId || loc1.nameId == loc2.nameId;
     }
     
     // displaying location info in a readable format
@@ -0,0 +1,70 @@
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LocationRegistry {
+    // giving every distinct name and area (ignoring case) a small integer id,
+    // so matching compares ints instead of strings
+    private static final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Integer> areaIds = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextNameId = new AtomicInteger();
+    private static final AtomicInteger nextAreaId = new AtomicInteger();
+    
+    // one shared Location per name/area pair, handed out when loading data
+    private static final ConcurrentHashMap<Long, Location> locations = new ConcurrentHashMap<>();
+    
+    // not meant to be created, everything is static
+    private LocationRegistry() {
+    }
+    
+    // getting the id for a location name, assigning one the first time it is seen
+    public static int nameId(String name) {
+        return nameIds.computeIfAbsent(normalize(name), key -> nextNameId.getAndIncrement());
+    }
+    
+    // getting the id for an area, assigning one the first time it is seen
+    public static int areaId(String area) {
+        return areaIds.computeIfAbsent(normalize(area), key -> nextAreaId.getAndIncrement());
+    }
+    
+    // getting the shared Location for a name and area instead of creating a duplicate
+    public static Location intern(String name, String area) {
+        long key = pairKey(nameId(name), areaId(area));
+        Location location = locations.get(key);
+        if (location == null) {
+            Location created = new Location(name, area);
+            location = locations.putIfAbsent(key, created);
+            if (location == null) location = created;
+        }
+        return location;
+    }
+    
+    // getting the shared Location for a name and area that are both already known, or null,
+    // without giving new ids to anything; for text sent by clients, so it can't grow the registry
+    public static Location find(String name, String area) {
+        if (!nameIds.containsKey(normalize(name)) || !areaIds.containsKey(normalize(area))) {
+            return null;
+        }
+        return intern(name, area);
+    }
+    
+    // getting the shared Location for a pair of ids, or null if it was never interned
+    public static Location byIds(int nameId, int areaId) {
+        return locations.get(pairKey(nameId, areaId));
+    }
+    
+    // counting distinct names and areas seen so far
+    public static int nameCount() { return nameIds.size(); }
+    public static int areaCount() { return areaIds.size(); }
+    
+    // packing two ids into one map key
+    private static long pairKey(int first, int second) {
+        return ((long) first << 32) | (second & 0xFFFFFFFFL);
+    }
+    
+    // lower-casing so ids compare the same way equalsIgnoreCase does; in the root locale so a
+    // Turkish default locale doesn't turn "I" into a dotless i and split one place into two
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,4 @@
+public interface RideAlertListener {
+    // called when a newly posted trip matches a rider's standing subscription
+    void tripPosted(RideSubscription subscription, Trip trip);
+}
@@ -0,0 +1,247 @@
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class RideLinkBenchmark {
+    // timing the hot paths of the matcher, persistence and fare code on datasets of growing size
+    // usage: java RideLinkBenchmark [sizes] [benchmarks]
+    //   sizes       comma separated trip counts, default 1000,10000,100000,1000000
+    //   benchmarks  comma separated names to run, default all of them
+    // e.g. java -Xmx16g RideLinkBenchmark 1000,10000000 findMatches,loadTripsFromCSV
+    //
+    // every benchmark warms up first, then reports time per operation, bytes allocated per
+    // operation by the measuring thread, and the GC count and time spent while it ran.
+    // the CSV benchmarks read and write users.csv and trips.csv, so run it from an empty directory
+    private static final String[] ALL = {
+        "findMatches", "getAvailableTrips", "registerUser", "getUserById",
+        "loadUsersFromCSV", "loadTripsFromCSV", "saveTripsToCSV",
+        "getSystemImpactReport", "calculateFarePerPerson", "tripToString"
+    };
+    private static final long WARMUP_NANOS = 1_000_000_000L;
+    private static final long MEASURE_NANOS = 2_000_000_000L;
+
+    private static final String[][] PLACES = {
+        { "Ashesi University", "Berekuso" }, { "Accra Mall", "Tetteh Quarshie" },
+        { "Kwame Nkrumah Circle", "Adabraka" }, { "University of Ghana", "Legon" },
+        { "Kotoka Airport", "Airport Residential" }, { "Makola Market", "Accra Central" },
+        { "West Hills Mall", "Weija" }, { "Achimota Mall", "Achimota" },
+        { "Osu Castle", "Osu" }, { "Labadi Beach", "La" }, { "Tema Harbour", "Tema" },
+        { "Kasoa Market", "Kasoa" }, { "Madina Zongo", "Madina" }, { "Spintex Road", "Baatsona" }
+    };
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final PrintStream CONSOLE = System.out;
+    private static final PrintStream SILENT = new PrintStream(OutputStream.nullOutputStream());
+
+    // keeps results alive so the JIT can't drop the work that produced them
+    private static long sink;
+
+    public static void main(String[] args) {
+        if (new File("users.csv").exists() || new File("trips.csv").exists()) {
+            System.out.println("users.csv or trips.csv already exists here, run the benchmark from an empty directory");
+            return;
+        }
+        String sizeList = args.length > 0 ? args[0] : "1000,10000,100000,1000000";
+        String[] benchmarks = args.length > 1 ? args[1].split(",") : ALL;
+
+        System.out.printf("%-24s %10s %14s %14s %12s %8s %10s%n",
+                          "benchmark", "trips", "ops", "ns/op", "bytes/op", "gc", "gc ms");
+        for (String size : sizeList.split(",")) {
+            run(Integer.parseInt(size.trim()), benchmarks);
+        }
+        new File("users.csv").delete();
+        new File("trips.csv").delete();
+        System.exit(0);
+    }
+
+    // building one dataset and running the chosen benchmarks against it
+    private static void run(int tripCount, String[] benchmarks) {
+        Random random = new Random(42);
+        RideLinkMatcher system = dataset(tripCount, random);
+
+        ArrayList<Trip> trips = system.getAllTrips();
+        ArrayList<User> users = system.getAllUsers();
+        Trip[] sampleTrips = new Trip[1024];
+        for (int i = 0; i < sampleTrips.length; i++) {
+            sampleTrips[i] = trips.get(random.nextInt(trips.size()));
+        }
+        Location[][] queries = new Location[1024][];
+        LocalDateTime[] times = new LocalDateTime[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            Trip trip = trips.get(random.nextInt(trips.size()));
+            queries[i] = new Location[] { trip.getOrigin(), trip.getDestination() };
+            times[i] = trip.getDepartureTime().plusMinutes(random.nextInt(41) - 20);
+        }
+        String[] userIds = new String[1024];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = users.get(random.nextInt(users.size())).getId();
+        }
+
+        // the load benchmarks read back what the save writes
+        System.setOut(SILENT);
+        system.saveUsersToCSV();
+        system.saveTripsToCSV();
+        System.setOut(CONSOLE);
+
+        int[] next = { 0 };
+        for (String name : benchmarks) {
+            switch (name.trim()) {
+                case "findMatches":
+                    measure(name, tripCount, () -> {
+                        int i = next[0]++ & (queries.length - 1);
+                        sink += system.findMatches(queries[i][0], queries[i][1], times[i]).size();
+                    });
+                    break;
+                case "getAvailableTrips":
+                    measure(name, tripCount, () -> sink += system.getAvailableTrips().size());
+                    break;
+                case "registerUser": {
+                    // registering into a matcher of its own so the extra riders don't skew the rest
+                    RideLinkMatcher target = dataset(0, random);
+                    measure(name, tripCount, () -> {
+                        int i = next[0]++;
+                        sink += target.registerUser(new Rider("BENCH" + i, "Bench Rider", "0240000000",
+                                                              25, "Female", "Cash")) ? 1 : 0;
+                    });
+                    break;
+                }
+                case "getUserById":
+                    measure(name, tripCount, () -> {
+                        sink += system.getUserById(userIds[next[0]++ & (userIds.length - 1)]).getAge();
+                    });
+                    break;
+                case "loadUsersFromCSV":
+                    measure(name, tripCount, () -> {
+                        RideLinkMatcher fresh = new RideLinkMatcher();
+                        fresh.loadUsersFromCSV();
+                        sink += fresh.getUserCount();
+                    });
+                    break;
+                case "loadTripsFromCSV": {
+                    // users are loaded once up front; each run loads the trips into a copy of them
+                    RideLinkMatcher[] fresh = new RideLinkMatcher[1];
+                    measureWithSetup(name, tripCount, () -> {
+                        fresh[0] = new RideLinkMatcher();
+                        fresh[0].setVerbose(false);
+                        for (User user : users) fresh[0].registerUser(user);
+                    }, () -> {
+                        fresh[0].loadTripsFromCSV();
+                        sink += fresh[0].getTripCount();
+                    });
+                    break;
+                }
+                case "saveTripsToCSV":
+                    measure(name, tripCount, system::saveTripsToCSV);
+                    break;
+                case "getSystemImpactReport":
+                    measure(name, tripCount, () -> sink += system.getSystemImpactReport().length());
+                    break;
+                case "calculateFarePerPerson":
+                    measure(name, tripCount, () -> {
+                        Trip trip = sampleTrips[next[0]++ & (sampleTrips.length - 1)];
+                        sink += (long) trip.calculateFarePerPerson();
+                    });
+                    break;
+                case "tripToString":
+                    measure(name, tripCount, () -> sink += sampleTrips[next[0]++ & (sampleTrips.length - 1)].toString().length());
+                    break;
+                default:
+                    System.out.println("Unknown benchmark " + name);
+            }
+        }
+    }
+
+    // creating drivers, riders and trips spread over a week of departures between the places above
+    private static RideLinkMatcher dataset(int tripCount, Random random) {
+        System.setOut(SILENT);
+        RideLinkMatcher system = new RideLinkMatcher();
+        System.setOut(CONSOLE);
+        system.setVerbose(false);
+
+        int driverCount = tripCount == 0 ? 0 : Math.max(1, tripCount / 10);
+        int riderCount = tripCount / 4;
+        Driver[] drivers = new Driver[driverCount];
+        for (int i = 0; i < driverCount; i++) {
+            drivers[i] = new Driver(String.format("DRV%07d", i + 1), "Driver " + i, "0240000000",
+                                    25 + random.nextInt(30), i % 2 == 0 ? "Female" : "Male",
+                                    "Toyota Corolla", "GR-" + i, 4 + random.nextInt(4), 1 + random.nextInt(10));
+            system.registerUser(drivers[i]);
+        }
+        for (int i = 0; i < riderCount; i++) {
+            system.registerUser(new Rider(String.format("RDR%07d", i + 1), "Rider " + i, "0240000000",
+                                          18 + random.nextInt(40), i % 2 == 0 ? "Female" : "Male", "Cash"));
+        }
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(0).withMinute(0).withSecond(0).withNano(0);
+        for (int i = 0; i < tripCount; i++) {
+            String[] from = PLACES[random.nextInt(PLACES.length)];
+            String[] to = PLACES[random.nextInt(PLACES.length)];
+            system.postTrip(new Trip(String.format("TRIP%08d", i + 1), drivers[random.nextInt(driverCount)],
+                                     LocationRegistry.intern(from[0], from[1]), LocationRegistry.intern(to[0], to[1]),
+                                     base.plusMinutes(random.nextInt(7 * 24 * 60))));
+        }
+        return system;
+    }
+
+    private static void measure(String name, int tripCount, Runnable op) {
+        measureWithSetup(name, tripCount, null, op);
+    }
+
+    // warming up, then timing the operation until the budget is spent; setup, when given,
+    // runs untimed before every call and is left out of the time and allocation figures
+    private static void measureWithSetup(String name, int tripCount, Runnable setup, Runnable op) {
+        System.setOut(SILENT);
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        while (System.nanoTime() < warmupEnd) {
+            if (setup != null) setup.run();
+            op.run();
+        }
+
+        long gcCount = -gcCount();
+        long gcMillis = -gcMillis();
+        long ops = 0;
+        long elapsed = 0;
+        long allocated = 0;
+        int batch = 1;
+        long deadline = System.nanoTime() + MEASURE_NANOS;
+        while (System.nanoTime() < deadline || ops == 0) {
+            if (setup != null) setup.run();
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < batch; i++) op.run();
+            long time = System.nanoTime() - start;
+            elapsed += time;
+            allocated += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            ops += batch;
+            // growing batches of fast calls so the clock reads don't dominate
+            if (setup == null && time < 1_000_000 && batch < 65536) batch *= 2;
+        }
+        gcCount += gcCount();
+        gcMillis += gcMillis();
+        System.setOut(CONSOLE);
+
+        System.out.printf("%-24s %10d %14d %14.1f %12d %8d %10d%n",
+                          name, tripCount, ops, (double) elapsed / ops, allocated / ops, gcCount, gcMillis);
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+}
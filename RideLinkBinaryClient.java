@@ -0,0 +1,113 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+public class RideLinkBinaryClient implements Closeable {
+    // a small blocking client for the binary protocol, mirroring what the mobile app sends
+    // one request is in flight at a time and both buffers are reused between calls
+    private final SocketChannel channel;
+    private final ByteBuffer request;
+    private final ByteBuffer response;
+
+    // connecting to a running RideLinkBinaryServer
+    public RideLinkBinaryClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        this.channel.socket().setTcpNoDelay(true);
+        this.request = ByteBuffer.allocateDirect(RideLinkBinaryServer.MAX_FRAME);
+        this.response = ByteBuffer.allocateDirect(RideLinkBinaryServer.MAX_FRAME);
+    }
+
+    // logging in as an existing user, returning false if the id is unknown
+    public boolean login(String userId) throws IOException {
+        begin(RideLinkBinaryServer.OP_LOGIN);
+        RideLinkBinaryServer.writeAscii(request, userId);
+        return call() == RideLinkBinaryServer.STATUS_OK;
+    }
+
+    // looking up a location once, returning {nameId, areaId} or null if the server doesn't know it
+    public int[] location(String name, String area) throws IOException {
+        begin(RideLinkBinaryServer.OP_LOCATION);
+        writeUtf8(name);
+        writeUtf8(area);
+        if (call() != RideLinkBinaryServer.STATUS_OK) return null;
+        return new int[] { response.getInt(), response.getInt() };
+    }
+
+    // searching by location ids; the response buffer is left positioned on the trip count
+    // so the caller can decode results in place with the read helpers below
+    public byte search(int[] origin, int[] destination, long departureEpochMinute, int limit) throws IOException {
+        begin(RideLinkBinaryServer.OP_SEARCH);
+        request.putInt(origin[0]).putInt(origin[1]);
+        request.putInt(destination[0]).putInt(destination[1]);
+        request.putLong(departureEpochMinute);
+        request.put((byte) limit);
+        return call();
+    }
+
+    // joining a trip as the logged-in rider, returning the fare per person in pesewas or -1 if not joined
+    public int join(String tripId) throws IOException {
+        begin(RideLinkBinaryServer.OP_JOIN);
+        RideLinkBinaryServer.writeAscii(request, tripId);
+        if (call() != RideLinkBinaryServer.STATUS_OK) return -1;
+        return response.getInt();
+    }
+
+    // checking a trip, returning the status byte or -1 if not found;
+    // seats left and passenger count follow in the response buffer
+    public int tripStatus(String tripId) throws IOException {
+        begin(RideLinkBinaryServer.OP_TRIP_STATUS);
+        RideLinkBinaryServer.writeAscii(request, tripId);
+        if (call() != RideLinkBinaryServer.STATUS_OK) return -1;
+        return response.get();
+    }
+
+    // getting the last response, positioned just after what the call already read
+    public ByteBuffer getResponse() {
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // starting a new frame with room for its length
+    private void begin(byte opcode) {
+        request.clear();
+        request.position(4);
+        request.put(opcode);
+    }
+
+    // sending the frame and blocking until the whole response frame is in, returning its status
+    private byte call() throws IOException {
+        request.putInt(0, request.position() - 4);
+        request.flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+
+        response.clear();
+        response.limit(4);
+        readFully();
+        int length = response.getInt(0);
+        response.limit(4 + length);
+        readFully();
+        response.position(4);
+        return response.get();
+    }
+
+    private void readFully() throws IOException {
+        while (response.hasRemaining()) {
+            if (channel.read(response) < 0) throw new IOException("Server closed the connection");
+        }
+    }
+
+    private void writeUtf8(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        request.putShort((short) bytes.length);
+        request.put(bytes);
+    }
+}
@@ -0,0 +1,539 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+public class RideLinkBinaryServer {
+    // serving mobile clients over a compact binary protocol on one non-blocking selector thread
+    //
+    // reads are answered on the selector thread; changes that have to reach the journal are
+    // handed to a worker, and the connection is not read from again until its response is
+    // queued, so responses still go out in request order while other connections carry on
+    //
+    // every frame is [int length][payload of that many bytes], big-endian
+    // request payloads start with an opcode byte, responses with a status byte
+    //   LOGIN       [byte len][ascii userId]                        -> [byte isRider]
+    //   LOCATION    [short len][utf8 name][short len][utf8 area]   -> [int nameId][int areaId]
+    //   SEARCH      [int originNameId][int originAreaId][int destNameId][int destAreaId]
+    //               [long departureEpochMinute][byte limit]       -> [short count] then per trip:
+    //               [byte len][ascii tripId][int originNameId][int originAreaId][int destNameId]
+    //               [int destAreaId][long departureEpochMinute][byte seatsLeft][int fareCents][byte status]
+    //   JOIN        [byte len][ascii tripId]                        -> [int fareCents]
+    //   TRIP_STATUS [byte len][ascii tripId]                        -> [byte status][byte seatsLeft][short passengers]
+    // a change that could not be saved is answered with STATUS_ERROR
+    // locations are sent once as text and referred to by their registry ids afterwards,
+    // so searches and results carry no strings apart from trip ids; only places the server
+    // already knows from its trips resolve, anything else is STATUS_NOT_FOUND
+    // JOIN books the rider the connection logged in as, and is STATUS_NOT_LOGGED_IN without one
+    public static final byte OP_LOCATION = 1;
+    public static final byte OP_SEARCH = 2;
+    public static final byte OP_JOIN = 3;
+    public static final byte OP_TRIP_STATUS = 4;
+    public static final byte OP_LOGIN = 5;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NOT_FOUND = 1;
+    public static final byte STATUS_REJECTED = 2;
+    public static final byte STATUS_BAD_REQUEST = 3;
+    public static final byte STATUS_ERROR = 4;
+    public static final byte STATUS_NOT_LOGGED_IN = 5;
+
+    public static final byte TRIP_PENDING = 0;
+    public static final byte TRIP_ACTIVE = 1;
+    public static final byte TRIP_COMPLETED = 2;
+    public static final byte TRIP_OTHER = 3;
+
+    // frames never exceed one pooled buffer
+    public static final int MAX_FRAME = 16 * 1024;
+    private static final int DEFAULT_PORT = 7071;
+    
+    // enough workers that many joins wait on the same journal fsync
+    private static final int WORKERS = 64;
+    
+    // how long to stop accepting after an accept fails, so running out of file descriptors
+    // doesn't spin the selector while the server waits for connections to close
+    private static final long ACCEPT_BACKOFF_MILLIS = 100;
+
+    private final RideLinkMatcher system;
+    private final int port;
+    private final BufferPool pool;
+    private final ByteBuffer readBuffer;
+    private final ExecutorService workers;
+    
+    // responses finished by workers, waiting for the selector thread to send them
+    private final ConcurrentLinkedQueue<Completion> completed = new ConcurrentLinkedQueue<>();
+    private volatile Selector selector;
+    private volatile ServerSocketChannel serverChannel;
+    private SelectionKey acceptKey;
+    private long acceptPausedUntil;
+    private volatile boolean running;
+
+    // creating a server in front of an existing matcher
+    public RideLinkBinaryServer(RideLinkMatcher system, int port) {
+        this.system = system;
+        this.port = port;
+        this.pool = new BufferPool(MAX_FRAME, 4096);
+        this.readBuffer = ByteBuffer.allocateDirect(MAX_FRAME);
+        this.workers = Executors.newFixedThreadPool(WORKERS, task -> {
+            Thread thread = new Thread(task, "ridelink-binary-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // starting the server from the command line: java RideLinkBinaryServer [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        RideLinkMatcher system = new RideLinkMatcher();
+        if (!system.loadSnapshot(Snapshot.DEFAULT_FILE)) {
+            system.loadUsersFromCSV();
+            system.loadTripsFromCSV();
+        }
+        if (!system.openJournal(Journal.DEFAULT_FILE)) {
+            System.out.println("Not starting: " + Journal.DEFAULT_FILE + " could not be replayed");
+            return;
+        }
+        system.openArchive(TripArchive.DEFAULT_FILE);
+        system.setVerbose(false);
+        system.startLifecycle();
+        CheckpointScheduler checkpoints = new CheckpointScheduler(system, Snapshot.DEFAULT_FILE);
+
+        // saving data when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Saving data...");
+            system.stopLifecycle();
+            checkpoints.close();
+            system.saveUsersToCSV();
+            system.saveTripsToCSV();
+            system.closeJournal();
+            system.closeArchive();
+        }));
+
+        new RideLinkBinaryServer(system, port).serve();
+    }
+
+    // running the selector loop until stopped
+    public void serve() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 65536);
+        serverChannel.configureBlocking(false);
+        acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        System.out.println("RideLink binary server listening on port " + getLocalPort());
+
+        try {
+            while (running) {
+                if (acceptPausedUntil == 0) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(1, acceptPausedUntil - System.currentTimeMillis()));
+                    if (System.currentTimeMillis() >= acceptPausedUntil) {
+                        acceptPausedUntil = 0;
+                        acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+                    }
+                }
+                Completion done;
+                while ((done = completed.poll()) != null) {
+                    complete(done.key, done.response);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        close(key);
+                    }
+                }
+            }
+        } finally {
+            workers.shutdown();
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection) close(key);
+            }
+            serverChannel.close();
+            selector.close();
+        }
+    }
+
+    // stopping the selector loop
+    public void stop() {
+        running = false;
+        if (selector != null) selector.wakeup();
+    }
+
+    // getting the port actually bound, useful when started on port 0
+    public int getLocalPort() {
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException | NullPointerException e) {
+            return -1;
+        }
+    }
+
+    // accepting every pending connection; a failed accept (out of file descriptors, say) is
+    // logged and accepting pauses briefly, and a client that fails to set up is dropped
+    private void accept() {
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                System.out.println("Error accepting connection: " + e.getMessage());
+                acceptPausedUntil = System.currentTimeMillis() + ACCEPT_BACKOFF_MILLIS;
+                acceptKey.interestOps(0);
+                return;
+            }
+            if (channel == null) return;
+            try {
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                channel.register(selector, SelectionKey.OP_READ, new Connection());
+            } catch (IOException e) {
+                System.out.println("Error setting up connection: " + e.getMessage());
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // already closed
+                }
+            }
+        }
+    }
+
+    // reading whatever arrived and answering every complete frame in it
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        // reading into the shared buffer unless this connection has a partial frame waiting
+        ByteBuffer buffer = connection.inbound != null ? connection.inbound : readBuffer;
+        if (buffer == readBuffer) buffer.clear();
+        int count = channel.read(buffer);
+        if (count < 0) {
+            close(key);
+            return;
+        }
+        buffer.flip();
+        process(key, connection, buffer);
+    }
+
+    // answering every complete frame in the buffer, stopping at a change handed to a worker;
+    // whatever is left over is kept in a pooled buffer owned by the connection
+    private void process(SelectionKey key, Connection connection, ByteBuffer buffer) throws IOException {
+        while (!connection.busy && buffer.remaining() >= 4) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > MAX_FRAME - 4) {
+                close(key);
+                return;
+            }
+            if (buffer.remaining() < 4 + length) break;
+            buffer.position(buffer.position() + 4);
+            int frameEnd = buffer.position() + length;
+            int limit = buffer.limit();
+            buffer.limit(frameEnd);
+            respond(key, connection, buffer);
+            buffer.limit(limit);
+            buffer.position(frameEnd);
+        }
+
+        if (buffer.hasRemaining()) {
+            if (buffer == readBuffer) {
+                connection.inbound = pool.acquire();
+                connection.inbound.put(buffer);
+            } else {
+                buffer.compact();
+            }
+        } else if (connection.inbound != null) {
+            pool.release(connection.inbound);
+            connection.inbound = null;
+        }
+        updateInterest(key, connection);
+    }
+
+    // flushing queued responses once the socket can take more
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        while (!connection.outbound.isEmpty()) {
+            ByteBuffer pending = connection.outbound.peek();
+            channel.write(pending);
+            if (pending.hasRemaining()) return;
+            pool.release(connection.outbound.poll());
+        }
+        updateInterest(key, connection);
+    }
+
+    // reading while no change is being saved for this connection, writing while responses wait
+    private void updateInterest(SelectionKey key, Connection connection) {
+        if (!key.isValid()) return;
+        int ops = connection.busy ? 0 : SelectionKey.OP_READ;
+        if (!connection.outbound.isEmpty()) ops |= SelectionKey.OP_WRITE;
+        key.interestOps(ops);
+    }
+
+    // sending a response a worker finished, then carrying on with frames that arrived meanwhile
+    private void complete(SelectionKey key, ByteBuffer response) {
+        if (!key.isValid()) {
+            pool.release(response);
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        connection.busy = false;
+        try {
+            send(key, connection, response);
+            if (connection.inbound != null) {
+                connection.inbound.flip();
+                process(key, connection, connection.inbound);
+            } else {
+                updateInterest(key, connection);
+            }
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    // decoding one request frame and sending its response, or handing it to a worker
+    private void respond(SelectionKey key, Connection connection, ByteBuffer request) throws IOException {
+        ByteBuffer response = pool.acquire();
+        response.position(4);
+        try {
+            byte opcode = request.get();
+            switch (opcode) {
+                case OP_LOGIN: login(connection, request, response); break;
+                case OP_LOCATION: location(request, response); break;
+                case OP_SEARCH: search(request, response); break;
+                case OP_JOIN: {
+                    String tripId = readAscii(request);
+                    User rider = connection.user;
+                    submit(key, connection, response, () -> join(tripId, rider, response));
+                    return;
+                }
+                case OP_TRIP_STATUS: tripStatus(request, response); break;
+                default: response.put(STATUS_BAD_REQUEST);
+            }
+        } catch (RuntimeException e) {
+            // covers truncated frames and responses that would not fit in a buffer
+            response.clear();
+            response.position(4);
+            response.put(STATUS_BAD_REQUEST);
+        }
+        send(key, connection, response);
+    }
+
+    // running a change on a worker, since it waits for the journal, and queueing its response
+    // for the selector thread; the connection is not read from until then
+    private void submit(SelectionKey key, Connection connection, ByteBuffer response, Runnable change) {
+        connection.busy = true;
+        try {
+            workers.execute(() -> {
+                try {
+                    change.run();
+                } catch (RuntimeException e) {
+                    // the journal could not save the change, so it was not made
+                    response.clear();
+                    response.position(4);
+                    response.put(STATUS_ERROR);
+                }
+                completed.add(new Completion(key, response));
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            response.put(STATUS_ERROR);
+            completed.add(new Completion(key, response));
+            selector.wakeup();
+        }
+    }
+
+    // framing a response and writing it straight away unless earlier responses are still queued
+    private void send(SelectionKey key, Connection connection, ByteBuffer response) throws IOException {
+        response.putInt(0, response.position() - 4);
+        response.flip();
+        if (connection.outbound.isEmpty()) {
+            ((SocketChannel) key.channel()).write(response);
+            if (!response.hasRemaining()) {
+                pool.release(response);
+                return;
+            }
+        }
+        connection.outbound.add(response);
+    }
+
+    // remembering who this connection is, so later requests act as them
+    private void login(Connection connection, ByteBuffer request, ByteBuffer response) {
+        User user = system.getUserById(readAscii(request));
+        if (user == null) {
+            response.put(STATUS_NOT_FOUND);
+            return;
+        }
+        connection.user = user;
+        response.put(STATUS_OK);
+        response.put((byte) (user instanceof Rider ? 1 : 0));
+    }
+
+    // looking up a known location and returning its ids
+    private void location(ByteBuffer request, ByteBuffer response) {
+        String name = readUtf8(request);
+        String area = readUtf8(request);
+        Location location = LocationRegistry.find(name, area);
+        if (location == null) {
+            response.put(STATUS_NOT_FOUND);
+            return;
+        }
+        response.put(STATUS_OK);
+        response.putInt(location.getNameId());
+        response.putInt(location.getAreaId());
+    }
+
+    // finding the best matching trips for a pair of location ids
+    private void search(ByteBuffer request, ByteBuffer response) {
+        Location origin = LocationRegistry.byIds(request.getInt(), request.getInt());
+        Location destination = LocationRegistry.byIds(request.getInt(), request.getInt());
+        long departureMinute = request.getLong();
+        int limit = request.get() & 0xFF;
+        if (origin == null || destination == null) {
+            response.put(STATUS_NOT_FOUND);
+            return;
+        }
+
+        LocalDateTime desiredTime = LocalDateTime.ofEpochSecond(departureMinute * 60, 0, ZoneOffset.UTC);
+        ArrayList<Trip> matches = system.findTopMatches(origin, destination, desiredTime, limit);
+        response.put(STATUS_OK);
+        response.putShort((short) matches.size());
+        for (Trip trip : matches) {
+            writeAscii(response, trip.getId());
+            response.putInt(trip.getOrigin().getNameId());
+            response.putInt(trip.getOrigin().getAreaId());
+            response.putInt(trip.getDestination().getNameId());
+            response.putInt(trip.getDestination().getAreaId());
+            response.putLong(TripIndex.epochMinute(trip.getDepartureTime()));
+            response.put((byte) Math.max(0, trip.getSeatsLeft()));
+            response.putInt((int) Math.round(trip.calculateFarePerPerson() * 100));
+            response.put(statusCode(trip.getTripStatus()));
+        }
+    }
+
+    // adding the logged-in rider to a trip, on a worker
+    private void join(String tripId, User rider, ByteBuffer response) {
+        Trip trip = system.getTripById(tripId);
+        if (!(rider instanceof Rider)) {
+            response.put(STATUS_NOT_LOGGED_IN);
+        } else if (trip == null) {
+            response.put(STATUS_NOT_FOUND);
+        } else if (!trip.addPassenger(rider)) {
+            response.put(STATUS_REJECTED);
+        } else {
+            response.put(STATUS_OK);
+            response.putInt((int) Math.round(trip.calculateFarePerPerson() * 100));
+        }
+    }
+
+    // reporting where a trip is in its lifecycle
+    private void tripStatus(ByteBuffer request, ByteBuffer response) {
+        Trip trip = system.getTripById(readAscii(request));
+        if (trip == null) {
+            response.put(STATUS_NOT_FOUND);
+            return;
+        }
+        response.put(STATUS_OK);
+        response.put(statusCode(trip.getTripStatus()));
+        response.put((byte) Math.max(0, trip.getSeatsLeft()));
+        response.putShort((short) trip.getPassengerCount());
+    }
+
+    // mapping status strings to the byte codes on the wire
+    public static byte statusCode(String status) {
+        switch (status) {
+            case "Pending": return TRIP_PENDING;
+            case "Active": return TRIP_ACTIVE;
+            case "Completed": return TRIP_COMPLETED;
+            default: return TRIP_OTHER;
+        }
+    }
+
+    // writing an id char by char so no byte array is created for it
+    public static void writeAscii(ByteBuffer buffer, String value) {
+        buffer.put((byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    // reading a length-prefixed ascii id
+    public static String readAscii(ByteBuffer buffer) {
+        int length = buffer.get() & 0xFF;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (buffer.get() & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    // reading a length-prefixed utf-8 string, only used for location names
+    public static String readUtf8(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // closing a client and giving its buffers back
+    private void close(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // already closed
+        }
+        if (connection != null) {
+            pool.release(connection.inbound);
+            connection.inbound = null;
+            while (!connection.outbound.isEmpty()) {
+                pool.release(connection.outbound.poll());
+            }
+        }
+    }
+
+    // per-client state: who logged in, a partial request, if any, responses still to send,
+    // and whether a change is being saved for it on a worker
+    private static class Connection {
+        private User user;
+        private ByteBuffer inbound;
+        private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        private boolean busy;
+    }
+
+    // a response a worker finished, for the connection it belongs to
+    private static class Completion {
+        private final SelectionKey key;
+        private final ByteBuffer response;
+
+        Completion(SelectionKey key, ByteBuffer response) {
+            this.key = key;
+            this.response = response;
+        }
+    }
+}
@@ -18,24 +18,41 @@ public class RideLinkDriver {
         scanner = new Scanner(System.in);
         printWelcomeBanner();
         
-        // load data from CSV files
-        system.loadUsersFromCSV();
-        system.loadTripsFromCSV();
+        // load data from the snapshot, or from the CSV files if there isn't one yet
+        if (!system.loadSnapshot(Snapshot.DEFAULT_FILE)) {
+            system.loadUsersFromCSV();
+            system.loadTripsFromCSV();
+        }
+        
+        // replaying changes made since the files were last saved, and not starting without them
+        if (!system.openJournal(Journal.DEFAULT_FILE)) {
+            System.out.println("Not starting: " + Journal.DEFAULT_FILE + " could not be replayed");
+            return;
+        }
+        system.openArchive(TripArchive.DEFAULT_FILE);
         
         // if no data loaded, setup sample data
-        if (system.getAllUsers().isEmpty()) {
+        if (system.getUserCount() == 0) {
             setupSampleData();
         }
         
+        // moving trips along by the clock and saving snapshots in the background while the menus run
+        system.startLifecycle();
+        CheckpointScheduler checkpoints = new CheckpointScheduler(system, Snapshot.DEFAULT_FILE);
+        
         boolean running = true;
         while (running) {
             running = (currentUser == null) ? showGuestMenu() : showUserMenu();
         }
         
-        // save data to CSV files before exit
+        // save data before exit; the CSV files are kept as a readable export
         System.out.println("\nSaving data...");
+        system.stopLifecycle();
+        checkpoints.close();
         system.saveUsersToCSV();
         system.saveTripsToCSV();
+        system.closeJournal();
+        system.closeArchive();
         System.out.println("Data saved successfully!");
         
         scanner.close();
@@ -132,7 +149,6 @@ public class RideLinkDriver {
     private static boolean showUserMenu() {
         System.out.println("\n--- WELCOME, " + currentUser.getName().toUpperCase() + "! ---");
         System.out.println("Logged in as: " + currentUser.getUserType());
-        System.out.println("Rating: " + String.format("%.1f", currentUser.getRating()) + "/5.0");
         
         if (currentUser instanceof Driver) {
             showDriverMenu();
@@ -387,6 +403,15 @@ public class RideLinkDriver {
             }
         }
         
+        // finished trips that were moved to the archive
+        for (Trip trip : system.getTripHistory(driver)) {
+            if (trip.getDriver().getId().equals(driver.getId())) {
+                System.out.println(trip);
+                System.out.println("-".repeat(60));
+                found = true;
+            }
+        }
+        
         if (!found) {
             System.out.println("You haven't posted any trips yet.");
         }
@@ -12,6 +12,9 @@ public class RideLinkGUI extends JFrame {
     // the backend system that handles all the matching and data
     private RideLinkMatcher system;
     
+    // saves snapshots and the CSV export in the background
+    private CheckpointScheduler checkpoints;
+    
     // keeps track of who is currently logged in
     private User currentUser;
     
@@ -39,18 +42,31 @@ public class RideLinkGUI extends JFrame {
         // create the backend system
         system = new RideLinkMatcher();
         
-        // try to load existing users from file
-        system.loadUsersFromCSV();
+        // try to load the snapshot, or existing users and trips from the CSV files
+        if (!system.loadSnapshot(Snapshot.DEFAULT_FILE)) {
+            system.loadUsersFromCSV();
+            system.loadTripsFromCSV();
+        }
         
-        // try to load existing trips from file
-        system.loadTripsFromCSV();
+        // replay changes made since the files were last saved, and don't start without them
+        if (!system.openJournal(Journal.DEFAULT_FILE)) {
+            JOptionPane.showMessageDialog(null, Journal.DEFAULT_FILE + " could not be replayed, so RideLink can't start.",
+                                          "Error", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        }
+        system.openArchive(TripArchive.DEFAULT_FILE);
         
         
         // if there are no users in the system, create some sample ones
-        if (system.getAllUsers().isEmpty()) {
+        if (system.getUserCount() == 0) {
             setupSampleData();
         }
         
+        // move trips along by the clock, and save in the background so the window never waits on a save
+        system.startLifecycle();
+        checkpoints = new CheckpointScheduler(system, Snapshot.DEFAULT_FILE);
+        checkpoints.setExportCsv(true);
+        
         // set the window title
         setTitle("RideLink - Smart Carpooling System");
         
@@ -1053,7 +1069,7 @@ public class RideLinkGUI extends JFrame {
                     
                     
                     // generate trip ID
-                    String tripId = "TRIP" + String.format("%03d", system.getAllTrips().size() + 1);
+                    String tripId = "TRIP" + String.format("%03d", system.getTripCount() + 1);
                     
                     // create new trip
                     Trip trip = new Trip(
@@ -1325,8 +1341,8 @@ public class RideLinkGUI extends JFrame {
                         .withSecond(0);
                     
                     
-                    // search for matches
-                    ArrayList<Trip> matches = system.findMatches(origin, destination, desiredTime);
+                    // search for the best matches
+                    ArrayList<Trip> matches = system.findTopMatches(origin, destination, desiredTime, 10);
                     
                     // close dialog
                     dialog.dispose();
@@ -1526,6 +1542,13 @@ public class RideLinkGUI extends JFrame {
             }
         }
         
+        // add finished trips that were moved to the archive
+        for (Trip trip : system.getTripHistory(driver)) {
+            if (trip.getDriver().getId().equals(driver.getId())) {
+                myTrips.add(trip);
+            }
+        }
+        
         
         JDialog dialog = new JDialog(this, "My Trips", true);
         dialog.setSize(700, 500);
@@ -1615,6 +1638,16 @@ public class RideLinkGUI extends JFrame {
                                 JOptionPane.INFORMATION_MESSAGE
                             );
                             
+                        } else if (system.getTripById(trip.getId()) == null) {
+                            
+                            // archived trips are history and can't be changed
+                            JOptionPane.showMessageDialog(
+                                dialog, 
+                                "This trip is archived and can no longer be changed.", 
+                                "Archived Trip", 
+                                JOptionPane.INFORMATION_MESSAGE
+                            );
+                            
                         } else {
                             
                             trip.setStatus("Completed");
@@ -1702,7 +1735,7 @@ public class RideLinkGUI extends JFrame {
                 DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm");
                 String timeStr = trip.getDepartureTime().format(formatter);
                 
-                int seatsLeft = trip.getDriver().getCarCapacity() - 1 - trip.getPassengerCount();
+                int seatsLeft = trip.getSeatsLeft();
                 
                 String tripInfo = String.format(
                     "<html><b>%s</b> - %s → %s<br>" +
@@ -2031,7 +2064,7 @@ public class RideLinkGUI extends JFrame {
                     
                     // generate new ID
                     String prefix = isDriver ? "DRV" : "RDR";
-                    String id = prefix + String.format("%03d", system.getAllUsers().size() + 1);
+                    String id = prefix + String.format("%03d", system.getUserCount() + 1);
                     
                     
                     if (isDriver) {
@@ -2256,10 +2289,9 @@ public class RideLinkGUI extends JFrame {
     
     
     
-    // save data to CSV files
+    // save data to the snapshot and CSV files on the background thread
     private void saveData() {
-        system.saveUsersToCSV();
-        system.saveTripsToCSV();
+        checkpoints.requestCheckpoint();
     }
     
     
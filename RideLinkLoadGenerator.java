@@ -0,0 +1,87 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RideLinkLoadGenerator {
+    // opening many client connections against a RideLinkServer and timing their requests
+    // usage: java RideLinkLoadGenerator [host] [port] [connections] [searchesPerConnection]
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int searches = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        
+        String departure = LocalDateTime.now().plusDays(1).withHour(9).withMinute(0)
+                                        .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"));
+        AtomicLong requests = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(connections);
+        ExecutorService executor = RideLinkServer.newPerConnectionExecutor();
+        
+        long startTime = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            final int client = c;
+            executor.execute(() -> {
+                try (Socket socket = new Socket(host, port);
+                     BufferedReader in = new BufferedReader(
+                         new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                     PrintWriter out = new PrintWriter(
+                         new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+                    
+                    socket.setTcpNoDelay(true);
+                    
+                    // every tenth client drives and posts a trip, the rest ride and search
+                    boolean driver = client % 10 == 0;
+                    String reply = driver
+                        ? call(in, out, "REGISTER_DRIVER|Load Driver " + client + "|0240000000|30|Female|Toyota Corolla|GR-" + client + "|5|4")
+                        : call(in, out, "REGISTER_RIDER|Load Rider " + client + "|0240000000|25|Female|Cash");
+                    String userId = reply.split("\\|")[1];
+                    call(in, out, "LOGIN|" + userId);
+                    requests.addAndGet(2);
+                    
+                    if (driver) {
+                        call(in, out, "POST|Ashesi University|Berekuso|Accra Mall|Tetteh Quarshie|" + departure);
+                        requests.incrementAndGet();
+                    }
+                    for (int i = 0; i < searches; i++) {
+                        String result = call(in, out, "SEARCH|Ashesi University|Berekuso|Accra Mall|Tetteh Quarshie|" + departure);
+                        requests.incrementAndGet();
+                        if (result.startsWith("ERR")) errors.incrementAndGet();
+                    }
+                    call(in, out, "QUIT");
+                } catch (IOException | RuntimeException e) {
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        
+        done.await();
+        executor.shutdown();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("%d connections, %d requests, %d errors in %.2f s (%.0f requests/s)%n",
+                          connections, requests.get(), errors.get(), seconds, requests.get() / seconds);
+    }
+    
+    // sending one request and reading its reply, including any extra result lines
+    private static String call(BufferedReader in, PrintWriter out, String request) throws IOException {
+        out.println(request);
+        String reply = in.readLine();
+        if (reply == null) throw new IOException("Server closed the connection");
+        if (request.startsWith("SEARCH") && reply.startsWith("OK|")) {
+            int count = Integer.parseInt(reply.substring(3));
+            for (int i = 0; i < count; i++) in.readLine();
+        }
+        return reply;
+    }
+}
@@ -1,46 +1,217 @@
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
-public class RideLinkMatcher {
+public class RideLinkMatcher implements TripListener {
     // managing all users and trips in the system
-    private ArrayList<Trip> availableTrips;
-    private ArrayList<User> allUsers;
+    // every collection here is safe to read while other threads post, join and register
+    private ConcurrentLinkedQueue<Trip> availableTrips;
+    private ConcurrentLinkedQueue<User> allUsers;
+    private AtomicInteger tripCount;
+    
+    // id lookups so login, join and duplicate checks don't scan the lists
+    private ConcurrentHashMap<String, User> usersById;
+    private ConcurrentHashMap<String, Trip> tripsById;
+    
+    // open trips indexed by route so searches skip unrelated corridors
+    private TripIndex openTripIndex;
+    
+    // standing ride subscriptions, looked up when a new trip is posted
+    private SubscriptionIndex subscriptions;
+    
+    // seat holds lapse on a timing wheel instead of one scheduled task per hold
+    private TimingWheel holdExpiry;
+    private long holdSeconds = 60;
+    
+    // longest window a standing subscription can cover
+    private static final long MAX_SUBSCRIPTION_HOURS = 7 * 24;
     
     // matching algorithm threshold for time compatibility
     private static final long MAX_TIME_DIFF_MINUTES = 30;
     
+    // weights for ranking matches, lower scores rank higher
+    private static final double SCORE_PER_MINUTE = 1.0;
+    private static final double SCORE_PER_CEDI = 1.0;
+    private static final double SCORE_PER_FREE_SEAT = -2.0;
+    private static final double SCORE_PER_YEAR_EXPERIENCE = -0.5;
+    
+    // printing per-request messages, turned off when serving many clients at once
+    private volatile boolean verbose = true;
+    
+    // every change is appended here once a journal is open
+    private volatile Journal journal;
+    
+    // counting changes so checkpoints know when there is something new to save
+    private final LongAdder changes = new LongAdder();
+    
+    // held shared while a trip is journaled but not yet visible, and exclusively while the
+    // journal is rotated, so no trip can fall between a retired journal and the next snapshot
+    private final ReentrantReadWriteLock rotationLock = new ReentrantReadWriteLock();
+    
+    // one snapshot save at a time
+    private final Object snapshotLock = new Object();
+    
+    // completed and long-past trips move here once an archive is open
+    private volatile TripArchive archive;
+    private long archiveGraceHours = 24;
+    private final Object archiveLock = new Object();
+    
+    // departs, expires and completes trips by the clock once started
+    private volatile TripLifecycle lifecycle;
+    
+    // totals for the impact report, kept up to date as things happen
+    private final ImpactCounters impact = new ImpactCounters();
+    
+    // full scans over at least this many trips are split across all cores
+    private int parallelThreshold = 10000;
+    
     // initializing the matcher system with empty lists
     public RideLinkMatcher() {
-        this.availableTrips = new ArrayList<>();
-        this.allUsers = new ArrayList<>();
+        this.availableTrips = new ConcurrentLinkedQueue<>();
+        this.allUsers = new ConcurrentLinkedQueue<>();
+        this.tripCount = new AtomicInteger();
+        this.usersById = new ConcurrentHashMap<>();
+        this.tripsById = new ConcurrentHashMap<>();
+        this.openTripIndex = new TripIndex();
+        this.subscriptions = new SubscriptionIndex();
+        this.holdExpiry = new TimingWheel("ridelink-hold-expiry", 100, 1024);
         System.out.println("RideLink Matcher System initialized! Ready to connect commuters!");
     }
     
     // registering a new user and checking for duplicate IDs
     public boolean registerUser(User user) {
-        for (User existingUser : allUsers) {
-            if (existingUser.getId().equals(user.getId())) {
-                System.out.println("Error: User ID " + user.getId() + " already exists!");
-                return false;
-            }
+        if (usersById.putIfAbsent(user.getId(), user) != null) {
+            log("Error: User ID " + user.getId() + " already exists!");
+            return false;
         }
         
-        allUsers.add(user);
-        System.out.println("Welcome to RideLink, " + user.getName() + "!");
-        System.out.println("You're registered as a " + user.getUserType());
+        // the id is claimed first so nobody else can take it, but the user only shows up in
+        // the list and the report once the journal has them; if it can't, the id is given back.
+        // both happen under the read lock, so a snapshot can't miss a user whose record went
+        // to the retired journal
+        rotationLock.readLock().lock();
+        try {
+            Journal current = journal;
+            if (current != null) current.userRegistered(user);
+            allUsers.add(user);
+            impact.userAdded(user);
+        } catch (RuntimeException e) {
+            usersById.remove(user.getId(), user);
+            throw e;
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        changes.increment();
+        
+        log("Welcome to RideLink, " + user.getName() + "!");
+        log("You're registered as a " + user.getUserType());
         return true;
     }
     
     // adding a new trip to the available trips list
     public void postTrip(Trip trip) {
-        availableTrips.add(trip);
-        System.out.println("Trip posted successfully!");
-        System.out.println("Trip ID: " + trip.getId());
-        System.out.println("Route: " + trip.getOrigin().getName() + 
+        // journaling before the trip is visible, so no join can be recorded ahead of it
+        rotationLock.readLock().lock();
+        try {
+            Journal current = journal;
+            if (current != null) current.tripPosted(trip);
+            addTrip(trip);
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+        changes.increment();
+        log("Trip posted successfully!");
+        log("Trip ID: " + trip.getId());
+        log("Route: " + trip.getOrigin().getName() + 
                          " -> " + trip.getDestination().getName());
+        
+        // telling riders who subscribed to this route and time
+        if (trip.isOpenForBooking()) {
+            for (RideSubscription subscription : subscriptions.matching(trip)) {
+                subscription.getListener().tripPosted(subscription, trip);
+            }
+        }
+    }
+    
+    // holding a seat on a trip while the rider confirms, released automatically if they don't
+    public SeatHold holdSeat(String tripId, User rider) {
+        Trip trip = getTripById(tripId);
+        if (trip == null) {
+            log("Trip not found!");
+            return null;
+        }
+        
+        long holdMillis = holdSeconds * 1000;
+        SeatHold hold = trip.holdSeat(rider, System.currentTimeMillis() + holdMillis);
+        if (hold != null) {
+            hold.setExpiry(holdExpiry.schedule(() -> {
+                if (trip.releaseHold(hold)) {
+                    log("Seat hold on " + trip.getId() + " for " + rider.getName() + " expired");
+                }
+            }, holdMillis));
+        }
+        return hold;
+    }
+    
+    // confirming a held seat before it lapses
+    public boolean confirmHold(SeatHold hold) {
+        boolean confirmed = hold.getTrip().confirmHold(hold);
+        if (confirmed && hold.getExpiry() != null) {
+            hold.getExpiry().cancel();
+        }
+        return confirmed;
+    }
+    
+    // letting a rider give up a held seat early
+    public boolean cancelHold(SeatHold hold) {
+        if (hold.getExpiry() != null) hold.getExpiry().cancel();
+        return hold.getTrip().releaseHold(hold);
+    }
+    
+    // changing how long a seat hold lasts
+    public void setHoldSeconds(long holdSeconds) {
+        this.holdSeconds = holdSeconds;
+    }
+    
+    // registering a rider to be told when a matching trip gets posted
+    public RideSubscription subscribe(User rider, Location origin, Location destination,
+                                      LocalDateTime windowStart, LocalDateTime windowEnd,
+                                      RideAlertListener listener) {
+        if (windowEnd.isBefore(windowStart) ||
+            ChronoUnit.HOURS.between(windowStart, windowEnd) > MAX_SUBSCRIPTION_HOURS) {
+            log("Error: Subscription window must be at most " + MAX_SUBSCRIPTION_HOURS + " hours!");
+            return null;
+        }
+        
+        RideSubscription subscription = new RideSubscription(rider, origin, destination,
+                                                             windowStart, windowEnd, listener);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+    
+    // cancelling a standing subscription
+    public void unsubscribe(RideSubscription subscription) {
+        subscriptions.remove(subscription);
     }
     
     // finding trips that match rider's location and time requirements
@@ -48,31 +219,271 @@ public class RideLinkMatcher {
                                        LocalDateTime desiredTime) {
         ArrayList<Trip> matches = new ArrayList<>();
         
-        System.out.println("\nSearching for matching trips...");
-        System.out.println("Origin: " + riderOrigin.getName());
-        System.out.println("Destination: " + riderDestination.getName());
+        log("\nSearching for matching trips...");
+        log("Origin: " + riderOrigin.getName());
+        log("Destination: " + riderDestination.getName());
+        
+        // only trips on a matching route inside the time window are candidates
+        // (one extra minute each side because the index works in whole minutes)
+        long desiredMinute = TripIndex.epochMinute(desiredTime);
+        ArrayList<Trip> candidates = openTripIndex.candidates(riderOrigin, riderDestination,
+                desiredMinute - MAX_TIME_DIFF_MINUTES - 1, desiredMinute + MAX_TIME_DIFF_MINUTES + 1);
         
         // filtering trips based on status, seats, location and time
-        for (Trip trip : availableTrips) {
-            if (!trip.getTripStatus().equals("Pending")) continue;
-            if (trip.getPassengerCount() >= (trip.getDriver().getCarCapacity() - 1)) continue;
-            
-            // checking if origin and destination zones match
-            boolean originMatches = Location.locationsMatch(riderOrigin, trip.getOrigin());
-            boolean destMatches = Location.locationsMatch(riderDestination, trip.getDestination());
+        for (Trip trip : candidates) {
+            if (tripMatches(trip, riderOrigin, riderDestination, desiredTime)) {
+                matches.add(trip);
+                log("Found match: " + trip.getId());
+            }
+        }
+        
+        log("Found " + matches.size() + " matching trip(s)!");
+        return matches;
+    }
+    
+    // finding the k best matching trips, best first, without sorting every match
+    public ArrayList<Trip> findTopMatches(Location riderOrigin, Location riderDestination,
+                                          LocalDateTime desiredTime, int k) {
+        ArrayList<Trip> top = new ArrayList<>();
+        if (k <= 0) return top;
+        
+        long desiredMinute = TripIndex.epochMinute(desiredTime);
+        ArrayList<Trip> candidates = openTripIndex.candidates(riderOrigin, riderDestination,
+                desiredMinute - MAX_TIME_DIFF_MINUTES - 1, desiredMinute + MAX_TIME_DIFF_MINUTES + 1);
+        if (candidates.isEmpty()) return top;
+        
+        // keeping the worst of the current best k at the head so it can be swapped out,
+        // sized by the candidates so a huge k does not allocate a huge heap; each trip is scored
+        // once, since seats and fares can change under a comparator that keeps re-reading them
+        Comparator<ScoredTrip> byScore = Comparator.comparingDouble(scored -> scored.score);
+        PriorityQueue<ScoredTrip> best = new PriorityQueue<>(Math.min(k, candidates.size()) + 1, byScore.reversed());
+        
+        for (Trip trip : candidates) {
+            if (!tripMatches(trip, riderOrigin, riderDestination, desiredTime)) continue;
+            best.add(new ScoredTrip(trip, scoreMatch(trip, desiredTime)));
+            if (best.size() > k) best.poll();
+        }
+        
+        ArrayList<ScoredTrip> ranked = new ArrayList<>(best);
+        ranked.sort(byScore);
+        for (ScoredTrip scored : ranked) top.add(scored.trip);
+        return top;
+    }
+    
+    // scoring a match by wait time, fare, free seats and driver experience
+    private double scoreMatch(Trip trip, LocalDateTime desiredTime) {
+        long minutes = Math.abs(ChronoUnit.MINUTES.between(desiredTime, trip.getDepartureTime()));
+        int freeSeats = trip.getSeatsLeft();
+        return minutes * SCORE_PER_MINUTE
+             + trip.calculateFarePerPerson() * SCORE_PER_CEDI
+             + freeSeats * SCORE_PER_FREE_SEAT
+             + trip.getDriver().getYearsExperience() * SCORE_PER_YEAR_EXPERIENCE;
+    }
+    
+    // answering many searches at once, returning one result list per query in the same order
+    public ArrayList<ArrayList<Trip>> findMatchesBatch(List<RideQuery> queries) {
+        ArrayList<ArrayList<Trip>> results = new ArrayList<>(queries.size());
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(new ArrayList<>());
+        }
+        
+        // grouping queries for the same route and hour so each group reads the index once
+        HashMap<String, ArrayList<Integer>> groups = new HashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            RideQuery query = queries.get(i);
+            long hour = Math.floorDiv(TripIndex.epochMinute(query.getDesiredTime()), 60);
+            groups.computeIfAbsent(query.getRouteKey() + "@" + hour, k -> new ArrayList<>()).add(i);
+        }
+        
+        for (ArrayList<Integer> group : groups.values()) {
+            // sorting the group by time so queries and candidates can be walked together
+            group.sort(Comparator.comparing(i -> queries.get(i).getDesiredTime()));
+            RideQuery first = queries.get(group.get(0));
+            long earliest = TripIndex.epochMinute(first.getDesiredTime());
+            long latest = TripIndex.epochMinute(queries.get(group.get(group.size() - 1)).getDesiredTime());
+            ArrayList<Trip> candidates = openTripIndex.candidates(first.getOrigin(), first.getDestination(),
+                    earliest - MAX_TIME_DIFF_MINUTES - 1, latest + MAX_TIME_DIFF_MINUTES + 1);
             
-            if (originMatches && destMatches) {
-                long timeDiff = Math.abs(ChronoUnit.MINUTES.between(desiredTime, trip.getDepartureTime()));
-                
-                if (timeDiff <= MAX_TIME_DIFF_MINUTES) {
-                    matches.add(trip);
-                    System.out.println("Found match: " + trip.getId());
+            // sliding the start of the window forward as the queries get later
+            int windowStart = 0;
+            for (int index : group) {
+                RideQuery query = queries.get(index);
+                long desiredMinute = TripIndex.epochMinute(query.getDesiredTime());
+                while (windowStart < candidates.size() &&
+                       TripIndex.epochMinute(candidates.get(windowStart).getDepartureTime())
+                           < desiredMinute - MAX_TIME_DIFF_MINUTES - 1) {
+                    windowStart++;
+                }
+                for (int j = windowStart; j < candidates.size(); j++) {
+                    Trip trip = candidates.get(j);
+                    if (TripIndex.epochMinute(trip.getDepartureTime()) > desiredMinute + MAX_TIME_DIFF_MINUTES + 1) break;
+                    if (tripMatches(trip, query.getOrigin(), query.getDestination(), query.getDesiredTime())) {
+                        results.get(index).add(trip);
+                    }
                 }
             }
         }
         
-        System.out.println("Found " + matches.size() + " matching trip(s)!");
-        return matches;
+        log("Matched " + queries.size() + " ride request(s) in " + groups.size() + " group(s)");
+        return results;
+    }
+    
+    // filling seats for a window of ride requests at once instead of first come first served
+    public LinkedHashMap<RideQuery, Trip> assignSeats(List<RideQuery> requests) {
+        ArrayList<ArrayList<Trip>> options = findMatchesBatch(requests);
+        Trip[] chosen = SeatAssigner.assign(requests, options);
+        
+        // booking the chosen seats and reporting which requests got one
+        LinkedHashMap<RideQuery, Trip> assignments = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            RideQuery request = requests.get(i);
+            if (chosen[i] != null && request.getRider() != null && chosen[i].addPassenger(request.getRider())) {
+                assignments.put(request, chosen[i]);
+            }
+        }
+        
+        log("Assigned seats to " + assignments.size() + " of " + requests.size() + " request(s)");
+        return assignments;
+    }
+    
+    // checking a single trip against what the rider asked for
+    private boolean tripMatches(Trip trip, Location riderOrigin, Location riderDestination,
+                                LocalDateTime desiredTime) {
+        if (!trip.getTripStatus().equals("Pending")) return false;
+        if (trip.getSeatsLeft() <= 0) return false;
+        
+        // checking if origin and destination zones match
+        if (!Location.locationsMatch(riderOrigin, trip.getOrigin())) return false;
+        if (!Location.locationsMatch(riderDestination, trip.getDestination())) return false;
+        
+        long timeDiff = Math.abs(ChronoUnit.MINUTES.between(desiredTime, trip.getDepartureTime()));
+        return timeDiff <= MAX_TIME_DIFF_MINUTES;
+    }
+    
+    // checking every trip ever posted, not just the indexed ones, for rebuilds and audits
+    public ArrayList<Trip> auditMatches(Location riderOrigin, Location riderDestination,
+                                        LocalDateTime desiredTime) {
+        return filterTrips(trip -> tripMatches(trip, riderOrigin, riderDestination, desiredTime));
+    }
+    
+    // turning the per-request console messages on or off, for trips as well
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+        Trip.setVerbose(verbose);
+    }
+    
+    // printing a message unless console output is turned off
+    private void log(String message) {
+        if (verbose) System.out.println(message);
+    }
+    
+    // changing how many trips a full scan needs before it runs in parallel
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+    
+    // scanning all trips, in parallel above the threshold, keeping the original trip order
+    private ArrayList<Trip> filterTrips(Predicate<Trip> filter) {
+        if (tripCount.get() < parallelThreshold) {
+            ArrayList<Trip> result = new ArrayList<>();
+            for (Trip trip : availableTrips) {
+                if (filter.test(trip)) result.add(trip);
+            }
+            return result;
+        }
+        return availableTrips.parallelStream()
+            .filter(filter)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+    
+    // storing a user unless the ID is already taken
+    private boolean addUser(User user) {
+        if (usersById.putIfAbsent(user.getId(), user) != null) {
+            return false;
+        }
+        allUsers.add(user);
+        impact.userAdded(user);
+        return true;
+    }
+    
+    // adding a whole file of trips, keeping their order in the list and indexing them in parallel
+    private void addTrips(List<Trip> trips) {
+        for (Trip trip : trips) {
+            availableTrips.add(trip);
+            tripsById.putIfAbsent(trip.getId(), trip);
+            trip.setListener(this);
+            impact.tripAdded(trip.getTripStatus());
+        }
+        tripCount.addAndGet(trips.size());
+        trips.parallelStream().forEach(this::reindex);
+        TripLifecycle current = lifecycle;
+        if (current != null) trips.forEach(current::schedule);
+    }
+    
+    // storing a trip and indexing it while it can still take riders
+    private void addTrip(Trip trip) {
+        availableTrips.add(trip);
+        tripCount.incrementAndGet();
+        tripsById.putIfAbsent(trip.getId(), trip);
+        trip.setListener(this);
+        impact.tripAdded(trip.getTripStatus());
+        reindex(trip);
+        TripLifecycle current = lifecycle;
+        if (current != null) current.schedule(trip);
+    }
+    
+    // dropping trips from the index once they fill up, without locking on ordinary joins
+    @Override
+    public void passengerAdded(Trip trip, User rider) {
+        Journal current = journal;
+        if (current != null) current.passengerAdded(trip, rider);
+        changes.increment();
+        if (!trip.isOpenForBooking()) {
+            reindex(trip);
+        }
+    }
+    
+    // re-indexing when holds are taken or lapse, since either can fill or free a trip
+    @Override
+    public void seatsChanged(Trip trip) {
+        reindex(trip);
+    }
+    
+    // keeping the index in line with status changes
+    @Override
+    public void statusChanged(Trip trip, String previousStatus) {
+        // counting and indexing before journaling, so the totals follow the trip even if the
+        // journal fails and the change is reported as not saved
+        impact.statusChanged(previousStatus, trip.getTripStatus());
+        reindex(trip);
+        changes.increment();
+        Journal current = journal;
+        if (current != null) current.statusChanged(trip);
+    }
+    
+    // adding savings to the running total as trips complete
+    @Override
+    public void savingsCredited(Trip trip, Rider rider, double amount) {
+        impact.savingsCredited(amount);
+    }
+    
+    // putting back a rider's totals from the journal; totals only ever grow, so only the
+    // part not already counted is added
+    void restoreRiderTotals(Rider rider, double saved, double distance) {
+        impact.savingsCredited(rider.updateSavings(saved - rider.getTotalMoneySaved()));
+        rider.addToDistanceCommuted(distance - rider.getTotalDistanceCommuted());
+    }
+    
+    // adding or removing a trip from the index while holding that trip's lock,
+    // so the check and the index update can't interleave with another change to it
+    private void reindex(Trip trip) {
+        synchronized (trip) {
+            if (trip.isOpenForBooking()) {
+                openTripIndex.add(trip);
+            } else {
+                openTripIndex.remove(trip);
+            }
+        }
     }
     
     // generating a report showing system usage and environmental impact
@@ -83,42 +494,34 @@ public class RideLinkMatcher {
         report.append("       RIDELINK SYSTEM IMPACT REPORT\n");
         report.append("=".repeat(50) + "\n\n");
         
-        // counting users
-        int driverCount = 0;
-        int riderCount = 0;
-        double totalMoneySaved = 0.0;
-        
-        for (User user : allUsers) {
-            if (user instanceof Driver) {
-                driverCount++;
-            } else if (user instanceof Rider) {
-                riderCount++;
-                totalMoneySaved += ((Rider) user).getTotalMoneySaved();
-            }
-        }
-        
-        // counting trips by status
-        int pendingTrips = 0;
-        int activeTrips = 0;
-        int completedTrips = 0;
+        // reading the running totals instead of walking every user and trip
+        long driverCount = impact.getDriverCount();
+        long riderCount = impact.getRiderCount();
+        double totalMoneySaved = impact.getMoneySaved();
+        long pendingTrips = impact.getPendingTrips();
+        long activeTrips = impact.getActiveTrips();
+        long completedTrips = impact.getCompletedTrips();
+        long expiredTrips = impact.getExpiredTrips();
         
-        for (Trip trip : availableTrips) {
-            switch (trip.getTripStatus()) {
-                case "Pending": pendingTrips++; break;
-                case "Active": activeTrips++; break;
-                case "Completed": completedTrips++; break;
-            }
+        // archived trips are counted as they were archived, without reading the archive
+        TripArchive current = archive;
+        if (current != null) {
+            pendingTrips += current.getStatusCount("Pending");
+            activeTrips += current.getStatusCount("Active");
+            completedTrips += current.getStatusCount("Completed");
+            expiredTrips += current.getStatusCount("Expired");
         }
         
         // building the full report with all stats
-        report.append(String.format("Total Users: %d\n", allUsers.size()));
+        report.append(String.format("Total Users: %d\n", usersById.size()));
         report.append(String.format("  - Drivers: %d\n", driverCount));
         report.append(String.format("  - Riders: %d\n\n", riderCount));
         
-        report.append(String.format("Total Trips: %d\n", availableTrips.size()));
+        report.append(String.format("Total Trips: %d\n", getTripCount()));
         report.append(String.format("  - Pending: %d\n", pendingTrips));
         report.append(String.format("  - Active: %d\n", activeTrips));
-        report.append(String.format("  - Completed: %d\n\n", completedTrips));
+        report.append(String.format("  - Completed: %d\n", completedTrips));
+        report.append(String.format("  - Expired: %d\n\n", expiredTrips));
         
         report.append("FINANCIAL IMPACT:\n");
         report.append(String.format("  Total Money Saved by Riders: GHS %.2f\n", totalMoneySaved));
@@ -130,39 +533,256 @@ public class RideLinkMatcher {
     
     // finding a user by their ID
     public User getUserById(String userId) {
-        for (User user : allUsers) {
-            if (user.getId().equals(userId)) {
-                return user;
-            }
-        }
-        return null;
+        return usersById.get(userId);
     }
     
     // finding a trip by its ID
     public Trip getTripById(String tripId) {
-        for (Trip trip : availableTrips) {
-            if (trip.getId().equals(tripId)) {
-                return trip;
-            }
-        }
-        return null;
+        return tripsById.get(tripId);
     }
     
     // getting all trips that are pending and have space
     public ArrayList<Trip> getAvailableTrips() {
-        ArrayList<Trip> available = new ArrayList<>();
+        return filterTrips(Trip::isOpenForBooking);
+    }
+    
+    // getting copies of all registered users and trips, safe to keep and iterate
+    public ArrayList<User> getAllUsers() { return new ArrayList<>(allUsers); }
+    public ArrayList<Trip> getAllTrips() { return new ArrayList<>(availableTrips); }
+    
+    // counting users and trips without copying the lists; the trip count includes archived trips
+    public int getUserCount() { return usersById.size(); }
+    public int getTripCount() {
+        TripArchive current = archive;
+        return tripCount.get() + (current == null ? 0 : current.getTripCount());
+    }
+    
+    // counting registrations, posts, joins and status changes since the system started
+    public long getChangeCount() { return changes.sum(); }
+    
+    // replaying the journal on top of what the CSV files loaded, then recording every change to it;
+    // a journal retired by a checkpoint that didn't finish is replayed first; returns false if
+    // it can't be replayed or opened, and then the caller must not take changes it can't save
+    public boolean openJournal(String fileName) {
+        long startTime = System.nanoTime();
+        Path file = Paths.get(fileName);
+        boolean wasVerbose = verbose;
+        try {
+            setVerbose(false);
+            int records = Journal.replay(Journal.retiredFile(file), this);
+            records += Journal.replay(file, this);
+            setVerbose(wasVerbose);
+            if (records > 0) {
+                System.out.println("Replayed " + records + " journal records in " +
+                                   (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            }
+            journal = new Journal(file);
+            return true;
+        } catch (Exception e) {
+            setVerbose(wasVerbose);
+            System.out.println("Error opening journal: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    // flushing and closing the journal
+    public void closeJournal() {
+        Journal current = journal;
+        journal = null;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            System.out.println("Error closing journal: " + e.getMessage());
+        }
+    }
+    
+    // departing, expiring and completing trips by the clock from now on, starting with the
+    // trips already here; call it after the journal is replayed so replay isn't raced
+    public void startLifecycle() {
+        if (lifecycle != null) return;
+        TripLifecycle current = new TripLifecycle(this);
+        lifecycle = current;
         for (Trip trip : availableTrips) {
-            if (trip.getTripStatus().equals("Pending") && 
-                trip.getPassengerCount() < (trip.getDriver().getCarCapacity() - 1)) {
-                available.add(trip);
+            current.schedule(trip);
+        }
+    }
+    
+    // stopping the clock-driven transitions
+    public void stopLifecycle() {
+        TripLifecycle current = lifecycle;
+        lifecycle = null;
+        if (current != null) current.stop();
+    }
+    
+    // opening the archive that completed and long-past trips are moved to
+    public void openArchive(String fileName) {
+        try {
+            archive = new TripArchive(Paths.get(fileName));
+        } catch (IOException e) {
+            System.out.println("Error opening archive: " + e.getMessage());
+        }
+    }
+    
+    // closing the archive
+    public void closeArchive() {
+        TripArchive current = archive;
+        archive = null;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            System.out.println("Error closing archive: " + e.getMessage());
+        }
+    }
+    
+    // changing how long after departure a trip that never completed stays searchable
+    public void setArchiveGraceHours(long archiveGraceHours) {
+        this.archiveGraceHours = archiveGraceHours;
+    }
+    
+    // moving completed and expired trips, and trips that departed more than the grace period
+    // ago, out of the hot lists, maps and index into the archive; returns how many moved
+    public int archiveTrips() {
+        TripArchive current = archive;
+        if (current == null) return 0;
+        synchronized (archiveLock) {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(archiveGraceHours);
+            ArrayList<Trip> finished = new ArrayList<>();
+            for (Trip trip : availableTrips) {
+                String status = trip.getTripStatus();
+                if (status.equals("Completed") || status.equals("Expired") ||
+                    trip.getDepartureTime().isBefore(cutoff)) {
+                    finished.add(trip);
+                }
+            }
+            if (finished.isEmpty()) return 0;
+            
+            // taking the trips out first, each under its own lock with its listener cleared, so
+            // nothing can change them unseen after they are written; journaling under the same
+            // read lock, so a snapshot can't be taken in between and bring them back
+            rotationLock.readLock().lock();
+            try {
+                removeTrips(finished);
+                try {
+                    current.append(finished);
+                } catch (IOException e) {
+                    System.out.println("Error archiving trips: " + e.getMessage());
+                    addTrips(finished);
+                    return 0;
+                }
+                Journal currentJournal = journal;
+                if (currentJournal != null) {
+                    try {
+                        currentJournal.tripsArchived(finished);
+                    } catch (RuntimeException e) {
+                        // the archive has them, so they stay out of the hot tier; if they come
+                        // back after a restart the archive keeps only the last copy of each
+                        System.out.println("Error journaling archived trips: " + e.getMessage());
+                    }
+                }
+            } finally {
+                rotationLock.readLock().unlock();
+            }
+            changes.add(finished.size());
+            log("Archived " + finished.size() + " trips");
+            return finished.size();
+        }
+    }
+    
+    // dropping a trip the journal says was archived, if it is still here
+    void forgetTrip(String tripId) {
+        Trip trip = tripsById.get(tripId);
+        if (trip != null) removeTrips(Collections.singletonList(trip));
+    }
+    
+    // taking trips out of the list, id map and index in one pass over the list
+    private void removeTrips(List<Trip> trips) {
+        Set<Trip> leaving = Collections.newSetFromMap(new IdentityHashMap<>());
+        leaving.addAll(trips);
+        availableTrips.removeIf(leaving::contains);
+        for (Trip trip : trips) {
+            tripsById.remove(trip.getId(), trip);
+            // status changes notify while holding the trip's lock, so under it the trip is
+            // either still counted under its current status or no longer heard from at all
+            synchronized (trip) {
+                trip.setListener(null);
+                impact.tripRemoved(trip.getTripStatus());
+                openTripIndex.remove(trip);
             }
         }
-        return available;
+        tripCount.addAndGet(-trips.size());
     }
     
-    // getting all registered users and trips
-    public ArrayList<User> getAllUsers() { return allUsers; }
-    public ArrayList<Trip> getAllTrips() { return availableTrips; }
+    // reading the archived trips a user drove or rode in, oldest first
+    public ArrayList<Trip> getTripHistory(User user) {
+        TripArchive current = archive;
+        if (current == null) return new ArrayList<>();
+        try {
+            return current.findByUser(user.getId(), usersById::get);
+        } catch (IOException e) {
+            System.out.println("Error reading archive: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    // saving every user and trip, with passengers and status, to a binary snapshot while other
+    // threads carry on changing them. the journal is rotated first, so any change the snapshot
+    // misses is in the new journal and replaying it on top puts things right; the retired
+    // journal is only deleted once the snapshot is safely saved. without a journal nothing
+    // would put those changes right, so no snapshot is saved
+    public boolean saveSnapshot(String fileName) {
+        synchronized (snapshotLock) {
+            long startTime = System.nanoTime();
+            Journal current = journal;
+            if (current == null) {
+                System.out.println("Error saving snapshot: no journal is open");
+                return false;
+            }
+            try {
+                rotationLock.writeLock().lock();
+                try {
+                    current.rotate();
+                } finally {
+                    rotationLock.writeLock().unlock();
+                }
+                
+                // users are copied before trips, so every trip's driver is among them unless
+                // the trip was posted after the rotation (and so is in the new journal)
+                ArrayList<User> users = getAllUsers();
+                ArrayList<Trip> trips = getAllTrips();
+                Snapshot.write(Paths.get(fileName), users, trips);
+                Files.deleteIfExists(Journal.retiredFile(current.getFile()));
+                log("Saved snapshot in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+                return true;
+            } catch (IOException e) {
+                System.out.println("Error saving snapshot: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+    
+    // loading a binary snapshot, returning false if there is none or it can't be read
+    // so the caller can fall back to the CSV files
+    public boolean loadSnapshot(String fileName) {
+        long startTime = System.nanoTime();
+        Path file = Paths.get(fileName);
+        if (!Files.exists(file)) return false;
+        try {
+            Snapshot.Contents contents = Snapshot.read(file);
+            for (User user : contents.getUsers()) {
+                addUser(user);
+            }
+            addTrips(contents.getTrips());
+            System.out.println("Loaded " + usersById.size() + " users and " + tripCount.get() +
+                               " trips from snapshot in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+            return true;
+        } catch (Exception e) {
+            System.out.println("Error loading snapshot: " + e.getMessage());
+            return false;
+        }
+    }
     
     // saving all users to CSV file
     public void saveUsersToCSV() {
@@ -179,7 +799,7 @@ public class RideLinkMatcher {
                         d.getCarCapacity(), d.getYearsExperience());
                 } else if (user instanceof Rider) {
                     Rider r = (Rider) user;
-                    writer.printf("%s,Rider,%s,%s,%d,%s,,,,,,%s,%.2f,%.2f\n",
+                    writer.printf("%s,Rider,%s,%s,%d,%s,,,,,%s,%.2f,%.2f\n",
                         r.getId(), r.getName(), r.getContactInfo(), r.getAge(), r.getGender(),
                         r.getPreferredPaymentMethod(),
                         r.getTotalMoneySaved(), r.getTotalDistanceCommuted());
@@ -191,44 +811,24 @@ public class RideLinkMatcher {
         }
     }
     
-    // loading users from CSV file
+    // loading users from CSV file, parsing chunks of the file in parallel
     public void loadUsersFromCSV() {
+        long startTime = System.nanoTime();
+        Path file = Paths.get("users.csv");
+        if (!Files.exists(file)) {
+            System.out.println("No previous user data found. Starting fresh.");
+            return;
+        }
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("users.csv"));
-            reader.readLine(); // skip header
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue; // skip empty lines
-                String[] data = line.split(",", -1); // -1 preserves trailing empty fields
-                String id = data[0];
-                String type = data[1];
-                String name = data[2];
-                String contact = data[3];
-                int age = Integer.parseInt(data[4]);
-                String gender = data[5];
-                
-                if (type.equals("Driver")) {
-                    String carModel = data[6];
-                    String carPlate = data[7];
-                    int carCapacity = Integer.parseInt(data[8]);
-                    int yearsExp = Integer.parseInt(data[9]);
-                    
-                    Driver driver = new Driver(id, name, contact, age, gender, 
-                                             carModel, carPlate, carCapacity, yearsExp);
-                    allUsers.add(driver);
-                } else if (type.equals("Rider")) {
-                    String paymentMethod = data[10];
-                    Rider rider = new Rider(id, name, contact, age, gender, paymentMethod);
-                    rider.updateSavings(Double.parseDouble(data[11]));
-                    rider.addToDistanceCommuted(Double.parseDouble(data[12]));
-                    allUsers.add(rider);
-                }
+            CsvIngest ingest = new CsvIngest();
+            for (User user : ingest.readUsers(file)) {
+                addUser(user);
             }
-            reader.close();
-            System.out.println("Loaded " + allUsers.size() + " users from CSV");
-        } catch (FileNotFoundException e) {
-            System.out.println("No previous user data found. Starting fresh.");
+            if (ingest.getSkippedLines() > 0) {
+                System.out.println("Skipped " + ingest.getSkippedLines() + " unreadable lines in users.csv");
+            }
+            System.out.println("Loaded " + usersById.size() + " users from CSV in " +
+                               (System.nanoTime() - startTime) / 1_000_000 + " ms");
         } catch (Exception e) {
             System.out.println("Error loading users: " + e.getMessage());
             e.printStackTrace();
@@ -260,45 +860,37 @@ public class RideLinkMatcher {
         }
     }
     
-    // loading trips from CSV file
+    // loading trips from CSV file, parsing chunks of the file in parallel
     public void loadTripsFromCSV() {
+        long startTime = System.nanoTime();
+        Path file = Paths.get("trips.csv");
+        if (!Files.exists(file)) {
+            System.out.println("No previous trip data found. Starting fresh.");
+            return;
+        }
         try {
-            BufferedReader reader = new BufferedReader(new FileReader("trips.csv"));
-            reader.readLine(); // skip header
-            
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty()) continue; // skip empty lines
-                String[] data = line.split(",", -1); // -1 preserves trailing empty fields
-                String tripId = data[0];
-                String driverId = data[1];
-                
-                // find the driver
-                Driver driver = null;
-                for (User user : allUsers) {
-                    if (user.getId().equals(driverId) && user instanceof Driver) {
-                        driver = (Driver) user;
-                        break;
-                    }
-                }
-                
-                if (driver != null) {
-                    Location origin = new Location(data[2], data[3]);
-                    Location destination = new Location(data[4], data[5]);
-                    LocalDateTime departureTime = LocalDateTime.parse(data[6], formatter);
-                    
-                    Trip trip = new Trip(tripId, driver, origin, destination, departureTime);
-                    availableTrips.add(trip);
-                }
+            // drivers are found through the id map; trips whose driver is missing are left out
+            CsvIngest ingest = new CsvIngest();
+            addTrips(ingest.readTrips(file, usersById::get));
+            if (ingest.getSkippedLines() > 0) {
+                System.out.println("Skipped " + ingest.getSkippedLines() + " unreadable lines in trips.csv");
             }
-            reader.close();
-            System.out.println("Loaded " + availableTrips.size() + " trips from CSV");
-        } catch (FileNotFoundException e) {
-            System.out.println("No previous trip data found. Starting fresh.");
+            System.out.println("Loaded " + tripCount.get() + " trips from CSV in " +
+                               (System.nanoTime() - startTime) / 1_000_000 + " ms");
         } catch (Exception e) {
             System.out.println("Error loading trips: " + e.getMessage());
             e.printStackTrace();
         }
     }
+    
+    // a trip with the score it had when it was ranked
+    private static class ScoredTrip {
+        private final Trip trip;
+        private final double score;
+        
+        ScoredTrip(Trip trip, double score) {
+            this.trip = trip;
+            this.score = score;
+        }
+    }
 }
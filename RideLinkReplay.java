@@ -0,0 +1,411 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+public class RideLinkReplay {
+    // replaying a JSONL trace of operations straight into RideLinkMatcher and timing each one
+    // usage: java RideLinkReplay <trace.jsonl> [speed|max] [threads]
+    //        java RideLinkReplay --generate <trace.jsonl> [trips] [searches]
+    //
+    // one flat JSON object per line, "t" is milliseconds since the start of the trace:
+    //   {"t":0,"op":"register_driver","id":"DRV001","name":"Ama","contact":"024","age":30,"gender":"Female",
+    //    "car":"Toyota Corolla","plate":"GR-1","capacity":5,"years":4}
+    //   {"t":5,"op":"register_rider","id":"RDR001","name":"Kofi","contact":"024","age":25,"gender":"Male","payment":"Cash"}
+    //   {"t":9,"op":"post","id":"TRIP001","driver":"DRV001","fromName":"Ashesi University","fromArea":"Berekuso",
+    //    "toName":"Accra Mall","toArea":"Tetteh Quarshie","time":"2025-03-01 08:00"}
+    //   {"t":12,"op":"search","fromName":...,"fromArea":...,"toName":...,"toArea":...,"time":"2025-03-01 08:10","limit":10}
+    //   {"t":15,"op":"join","trip":"TRIP001","rider":"RDR001"}
+    // searches without a limit go through findMatches, with one through findTopMatches
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int QUEUE_CAPACITY = 4096;
+
+    // marks the end of the trace for each worker
+    private static final Event END = new Event(0, null, null);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("usage: java RideLinkReplay <trace.jsonl> [speed|max] [threads]");
+            System.out.println("       java RideLinkReplay --generate <trace.jsonl> [trips] [searches]");
+            return;
+        }
+        if (args[0].equals("--generate")) {
+            int trips = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+            int searches = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+            generate(args[1], trips, searches);
+            return;
+        }
+
+        // a speed of 1 keeps the original timing, 10 plays it ten times faster, max ignores timing
+        double speed = args.length > 1 && !args[1].equalsIgnoreCase("max") ? Double.parseDouble(args[1]) : 0;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        RideLinkMatcher system = new RideLinkMatcher();
+        system.setVerbose(false);
+        new RideLinkReplay(system, threads).replay(args[0], speed);
+    }
+
+    private final RideLinkMatcher system;
+    private final int threadCount;
+
+    // creating a replayer that feeds an existing matcher from the given number of threads
+    public RideLinkReplay(RideLinkMatcher system, int threadCount) {
+        this.system = system;
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    // streaming the trace to the workers, pacing it unless speed is 0, then printing the report
+    public void replay(String traceFile, double speed) throws IOException, InterruptedException {
+        ArrayList<BlockingQueue<Event>> queues = new ArrayList<>();
+        ArrayList<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            BlockingQueue<Event> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Worker worker = new Worker(queue);
+            queues.add(queue);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long lines = 0;
+        long badLines = 0;
+        long firstMillis = -1;
+        long startNanos = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(new FileReader(traceFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                HashMap<String, String> fields;
+                long millis;
+                try {
+                    fields = parseObject(line);
+                    millis = fields.containsKey("t") ? Long.parseLong(fields.get("t")) : 0;
+                } catch (IllegalArgumentException e) {
+                    badLines++;
+                    continue;
+                }
+                if (firstMillis < 0) firstMillis = millis;
+
+                // paced latency is measured from when the operation was due, not when a worker got to it,
+                // so a backed-up replay shows up in the percentiles instead of being hidden;
+                // at max speed there is no due time and only the call itself is timed
+                long due = 0;
+                if (speed > 0) {
+                    due = startNanos + (long) ((millis - firstMillis) * 1_000_000L / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                queues.get(workerFor(fields, lines++)).put(new Event(due, fields.get("op"), fields));
+            }
+        }
+        for (BlockingQueue<Event> queue : queues) {
+            queue.put(END);
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        // merging every worker's latencies per operation type
+        TreeMap<String, LatencyLog> merged = new TreeMap<>();
+        TreeMap<String, Long> failures = new TreeMap<>();
+        for (Worker worker : workers) {
+            for (String op : worker.latencies.keySet()) {
+                merged.computeIfAbsent(op, k -> new LatencyLog()).addAll(worker.latencies.get(op));
+            }
+            for (String op : worker.failures.keySet()) {
+                failures.merge(op, worker.failures.get(op), Long::sum);
+            }
+        }
+
+        System.out.printf("Replayed %d operations in %.2f s (%.0f ops/s) on %d threads, speed %s%n",
+                          lines, seconds, lines / seconds, threadCount, speed > 0 ? speed + "x" : "max");
+        if (badLines > 0) System.out.println("Skipped " + badLines + " unreadable lines");
+        System.out.printf("%-16s %10s %10s %10s %10s %10s %10s%n",
+                          "op", "count", "failed", "ops/s", "p50 us", "p99 us", "p999 us");
+        for (String op : merged.keySet()) {
+            LatencyLog log = merged.get(op);
+            log.sort();
+            System.out.printf("%-16s %10d %10d %10.0f %10.1f %10.1f %10.1f%n",
+                              op, log.size(), failures.getOrDefault(op, 0L), log.size() / seconds,
+                              log.percentile(0.50) / 1000.0, log.percentile(0.99) / 1000.0,
+                              log.percentile(0.999) / 1000.0);
+        }
+    }
+
+    // picking the worker for an event: everything about one trip, or one user's registration,
+    // goes to the same worker so it runs in trace order; searches change nothing and are dealt
+    // round robin. a post or join still relies on the trace registering its users well before
+    private int workerFor(HashMap<String, String> fields, long line) {
+        String op = fields.get("op");
+        String key = null;
+        if ("join".equals(op)) {
+            key = fields.get("trip");
+        } else if (op != null && !op.equals("search")) {
+            key = fields.get("id");
+        }
+        if (key == null) return (int) (line % threadCount);
+        return Math.floorMod(key.hashCode(), threadCount);
+    }
+
+    // running one operation against the matcher, returning false when it was refused
+    private boolean apply(String op, HashMap<String, String> f) {
+        switch (op) {
+            case "register_driver":
+                return system.registerUser(new Driver(f.get("id"), f.get("name"), f.get("contact"),
+                    Integer.parseInt(f.get("age")), f.get("gender"), f.get("car"), f.get("plate"),
+                    Integer.parseInt(f.get("capacity")), Integer.parseInt(f.get("years"))));
+            case "register_rider":
+                return system.registerUser(new Rider(f.get("id"), f.get("name"), f.get("contact"),
+                    Integer.parseInt(f.get("age")), f.get("gender"), f.get("payment")));
+            case "post": {
+                User driver = system.getUserById(f.get("driver"));
+                if (!(driver instanceof Driver)) return false;
+                system.postTrip(new Trip(f.get("id"), (Driver) driver,
+                    LocationRegistry.intern(f.get("fromName"), f.get("fromArea")),
+                    LocationRegistry.intern(f.get("toName"), f.get("toArea")),
+                    LocalDateTime.parse(f.get("time"), TIME_FORMAT)));
+                return true;
+            }
+            case "search": {
+                Location origin = LocationRegistry.intern(f.get("fromName"), f.get("fromArea"));
+                Location destination = LocationRegistry.intern(f.get("toName"), f.get("toArea"));
+                LocalDateTime time = LocalDateTime.parse(f.get("time"), TIME_FORMAT);
+                if (f.containsKey("limit")) {
+                    system.findTopMatches(origin, destination, time, Integer.parseInt(f.get("limit")));
+                } else {
+                    system.findMatches(origin, destination, time);
+                }
+                return true;
+            }
+            case "join": {
+                Trip trip = system.getTripById(f.get("trip"));
+                User rider = system.getUserById(f.get("rider"));
+                return trip != null && rider != null && trip.addPassenger(rider);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown op " + op);
+        }
+    }
+
+    // writing a synthetic trace: drivers and riders register, drivers post trips through the
+    // morning, and riders search and join along the way, roughly one operation per millisecond
+    public static void generate(String traceFile, int trips, int searches) throws IOException {
+        String[][] places = {
+            { "Ashesi University", "Berekuso" }, { "Accra Mall", "Tetteh Quarshie" },
+            { "Kwame Nkrumah Circle", "Adabraka" }, { "University of Ghana", "Legon" },
+            { "Kotoka Airport", "Airport Residential" }, { "Makola Market", "Accra Central" },
+            { "West Hills Mall", "Weija" }, { "Achimota Mall", "Achimota" }
+        };
+        int drivers = Math.max(1, trips / 4);
+        int riders = Math.max(1, searches / 10);
+        LocalDateTime base = LocalDateTime.now().plusDays(1).withHour(6).withMinute(0).withSecond(0).withNano(0);
+        Random random = new Random(42);
+        long t = 0;
+
+        try (PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(traceFile)))) {
+            for (int i = 1; i <= drivers; i++) {
+                out.printf("{\"t\":%d,\"op\":\"register_driver\",\"id\":\"DRV%06d\",\"name\":\"Driver %d\","
+                         + "\"contact\":\"0240000000\",\"age\":%d,\"gender\":\"%s\",\"car\":\"Toyota Corolla\","
+                         + "\"plate\":\"GR-%d\",\"capacity\":%d,\"years\":%d}%n",
+                           t++, i, i, 25 + random.nextInt(30), i % 2 == 0 ? "Female" : "Male",
+                           i, 4 + random.nextInt(4), 1 + random.nextInt(10));
+            }
+            for (int i = 1; i <= riders; i++) {
+                out.printf("{\"t\":%d,\"op\":\"register_rider\",\"id\":\"RDR%06d\",\"name\":\"Rider %d\","
+                         + "\"contact\":\"0240000000\",\"age\":%d,\"gender\":\"%s\",\"payment\":\"Cash\"}%n",
+                           t++, i, i, 18 + random.nextInt(40), i % 2 == 0 ? "Female" : "Male");
+            }
+
+            // interleaving posts with searches and joins on trips already posted
+            int posted = 0;
+            int searched = 0;
+            while (posted < trips || searched < searches) {
+                boolean post = searched >= searches
+                    || (posted < trips && random.nextInt(trips + searches) < trips);
+                String[] from = places[random.nextInt(places.length)];
+                String[] to = places[random.nextInt(places.length)];
+                String when = base.plusMinutes(random.nextInt(12 * 60)).format(TIME_FORMAT);
+                if (post) {
+                    posted++;
+                    out.printf("{\"t\":%d,\"op\":\"post\",\"id\":\"TRIP%07d\",\"driver\":\"DRV%06d\","
+                             + "\"fromName\":\"%s\",\"fromArea\":\"%s\",\"toName\":\"%s\",\"toArea\":\"%s\",\"time\":\"%s\"}%n",
+                               t++, posted, 1 + random.nextInt(drivers), from[0], from[1], to[0], to[1], when);
+                } else {
+                    searched++;
+                    out.printf("{\"t\":%d,\"op\":\"search\",\"fromName\":\"%s\",\"fromArea\":\"%s\","
+                             + "\"toName\":\"%s\",\"toArea\":\"%s\",\"time\":\"%s\",\"limit\":10}%n",
+                               t++, from[0], from[1], to[0], to[1], when);
+                    if (posted > 0 && random.nextInt(5) == 0) {
+                        out.printf("{\"t\":%d,\"op\":\"join\",\"trip\":\"TRIP%07d\",\"rider\":\"RDR%06d\"}%n",
+                                   t++, 1 + random.nextInt(posted), 1 + random.nextInt(riders));
+                    }
+                }
+            }
+        }
+        System.out.println("Wrote trace to " + traceFile);
+    }
+
+    // reading one flat JSON object of string, number, boolean or null values
+    // numbers and booleans are kept as their text; nested objects and arrays are not supported
+    public static HashMap<String, String> parseObject(String line) {
+        HashMap<String, String> fields = new HashMap<>();
+        int[] pos = { skipSpace(line, 0) };
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') return fields;
+        while (true) {
+            String key = readString(line, pos);
+            expect(line, pos, ':');
+            char c = peek(line, pos);
+            String value;
+            if (c == '"') {
+                value = readString(line, pos);
+            } else {
+                int start = pos[0];
+                while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) pos[0]++;
+                value = line.substring(start, pos[0]);
+                if (value.isEmpty() || c == '{' || c == '[') throw new IllegalArgumentException("Unsupported value for " + key);
+                if (value.equals("null")) value = null;
+            }
+            fields.put(key, value);
+            char separator = peek(line, pos);
+            pos[0]++;
+            if (separator == '}') return fields;
+            if (separator != ',') throw new IllegalArgumentException("Expected , or } at " + (pos[0] - 1));
+        }
+    }
+
+    private static String readString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (pos[0] >= line.length()) throw new IllegalArgumentException("Unterminated string");
+            char c = line.charAt(pos[0]++);
+            if (c == '"') return value.toString();
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = line.charAt(pos[0]++);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    value.append((char) Integer.parseInt(line.substring(pos[0], pos[0] + 4), 16));
+                    pos[0] += 4;
+                    break;
+                default: value.append(escaped);
+            }
+        }
+    }
+
+    private static void expect(String line, int[] pos, char expected) {
+        if (peek(line, pos) != expected) throw new IllegalArgumentException("Expected " + expected + " at " + pos[0]);
+        pos[0]++;
+    }
+
+    // skipping whitespace and returning the next character, or 0 at the end of the line
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipSpace(line, pos[0]);
+        return pos[0] < line.length() ? line.charAt(pos[0]) : 0;
+    }
+
+    private static int skipSpace(String line, int i) {
+        while (i < line.length() && Character.isWhitespace(line.charAt(i))) i++;
+        return i;
+    }
+
+    // one parsed trace line and when it was due to run
+    private static class Event {
+        private final long dueNanos;
+        private final String op;
+        private final HashMap<String, String> fields;
+
+        Event(long dueNanos, String op, HashMap<String, String> fields) {
+            this.dueNanos = dueNanos;
+            this.op = op;
+            this.fields = fields;
+        }
+    }
+
+    // a thread draining its own queue so each worker keeps trace order for its share of lines
+    private class Worker extends Thread {
+        private final BlockingQueue<Event> queue;
+        private final HashMap<String, LatencyLog> latencies = new HashMap<>();
+        private final HashMap<String, Long> failures = new HashMap<>();
+
+        Worker(BlockingQueue<Event> queue) {
+            super("ridelink-replay");
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Event event = queue.take();
+                    if (event == END) return;
+                    String op = event.op == null ? "unknown" : event.op;
+                    long start = event.dueNanos != 0 ? event.dueNanos : System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = apply(op, event.fields);
+                    } catch (RuntimeException e) {
+                        ok = false;
+                    }
+                    latencies.computeIfAbsent(op, k -> new LatencyLog()).add(System.nanoTime() - start);
+                    if (!ok) failures.merge(op, 1L, Long::sum);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // latencies in nanoseconds kept in a growing array, sorted once for percentiles
+    private static class LatencyLog {
+        private long[] values = new long[1024];
+        private int size = 0;
+
+        void add(long nanos) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+        }
+
+        void addAll(LatencyLog other) {
+            if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(values.length * 2, size + other.size));
+            System.arraycopy(other.values, 0, values, size, other.size);
+            size += other.size;
+        }
+
+        void sort() {
+            Arrays.sort(values, 0, size);
+        }
+
+        int size() {
+            return size;
+        }
+
+        long percentile(double fraction) {
+            if (size == 0) return 0;
+            int index = (int) Math.ceil(fraction * size) - 1;
+            return values[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
@@ -0,0 +1,266 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RideLinkServer {
+    // serving RideLink over a simple line protocol, one thread per connection
+    //
+    // each request is one line of '|' separated fields, each reply starts with OK or ERR:
+    //   REGISTER_DRIVER|name|contact|age|gender|carModel|plate|capacity|yearsExp  -> OK|DRV004
+    //   REGISTER_RIDER|name|contact|age|gender|paymentMethod                      -> OK|RDR005
+    //   LOGIN|userId                                                              -> OK|name|type
+    //   POST|originName|originArea|destName|destArea|yyyy-MM-dd HH:mm             -> OK|TRIP003
+    //   SEARCH|originName|originArea|destName|destArea|yyyy-MM-dd HH:mm[|limit]   -> OK|count, then
+    //       one TRIP|id|origin|destination|departure|seatsLeft|fare line per match,
+    //       limit is 1..100 and defaults to 10; a place nobody has posted a trip for gives OK|0
+    //   JOIN|tripId, START|tripId, COMPLETE|tripId                                -> OK|...
+    //   QUIT                                                                      -> OK|bye
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int DEFAULT_PORT = 7070;
+    private static final int DEFAULT_SEARCH_LIMIT = 10;
+    private static final int MAX_SEARCH_LIMIT = 100;
+    // how many distinct place names or areas posts may add before only known places are taken
+    private static final int MAX_LOCATIONS = 50_000;
+
+    private final RideLinkMatcher system;
+    private final int port;
+    private final AtomicInteger userCounter;
+    private final AtomicInteger tripCounter;
+    private volatile ServerSocket serverSocket;
+
+    // creating a server in front of an existing matcher
+    public RideLinkServer(RideLinkMatcher system, int port) {
+        this.system = system;
+        this.port = port;
+        this.userCounter = new AtomicInteger(system.getUserCount() + 1);
+        this.tripCounter = new AtomicInteger(system.getTripCount() + 1);
+    }
+
+    // starting the server from the command line: java RideLinkServer [port]
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+        RideLinkMatcher system = new RideLinkMatcher();
+        if (!system.loadSnapshot(Snapshot.DEFAULT_FILE)) {
+            system.loadUsersFromCSV();
+            system.loadTripsFromCSV();
+        }
+        if (!system.openJournal(Journal.DEFAULT_FILE)) {
+            System.out.println("Not starting: " + Journal.DEFAULT_FILE + " could not be replayed");
+            return;
+        }
+        system.openArchive(TripArchive.DEFAULT_FILE);
+        system.setVerbose(false);
+        system.startLifecycle();
+        CheckpointScheduler checkpoints = new CheckpointScheduler(system, Snapshot.DEFAULT_FILE);
+
+        // saving data when the server is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Saving data...");
+            system.stopLifecycle();
+            checkpoints.close();
+            system.saveUsersToCSV();
+            system.saveTripsToCSV();
+            system.closeJournal();
+            system.closeArchive();
+        }));
+
+        new RideLinkServer(system, port).serve();
+    }
+
+    // accepting connections until the server is stopped
+    public void serve() throws IOException {
+        serverSocket = new ServerSocket(port, 4096);
+        System.out.println("RideLink server listening on port " + serverSocket.getLocalPort());
+
+        ExecutorService executor = newPerConnectionExecutor();
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) break;
+                    throw e;
+                }
+                executor.execute(() -> handle(socket));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // closing the listening socket so serve() returns
+    public void stop() throws IOException {
+        if (serverSocket != null) serverSocket.close();
+    }
+
+    // getting the port actually bound, useful when started on port 0
+    public int getLocalPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    // using a virtual thread per connection when the JVM has them (Java 21+),
+    // otherwise falling back to a cached pool of platform threads
+    public static ExecutorService newPerConnectionExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor")
+                .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // reading requests from one client until it quits or disconnects
+    private void handle(Socket socket) {
+        User currentUser = null;
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(
+                 new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                 new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            client.setTcpNoDelay(true);
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.trim().isEmpty()) continue;
+                String[] parts = line.split("\\|", -1);
+                String command = parts[0].trim().toUpperCase();
+
+                if (command.equals("QUIT")) {
+                    out.println("OK|bye");
+                    break;
+                }
+                if (command.equals("LOGIN")) {
+                    User user = parts.length > 1 ? system.getUserById(parts[1].trim()) : null;
+                    if (user == null) {
+                        out.println("ERR|User ID not found");
+                    } else {
+                        currentUser = user;
+                        out.println("OK|" + user.getName() + "|" + user.getUserType());
+                    }
+                } else {
+                    try {
+                        out.println(execute(command, parts, currentUser));
+                    } catch (NumberFormatException | DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+                        out.println("ERR|Bad request: " + e.getMessage());
+                    } catch (RuntimeException e) {
+                        // anything else that went wrong with this one request, the connection stays up
+                        out.println("ERR|Server error: " + e.getMessage());
+                    }
+                }
+                out.flush();
+            }
+            out.flush();
+        } catch (IOException e) {
+            // client went away, nothing left to do for this connection
+        }
+    }
+
+    // a place that is already known, or a new one while there is still room for it
+    private static Location postedLocation(String name, String area) {
+        Location known = LocationRegistry.find(name, area);
+        if (known != null) return known;
+        if (LocationRegistry.nameCount() >= MAX_LOCATIONS || LocationRegistry.areaCount() >= MAX_LOCATIONS) {
+            return null;
+        }
+        return LocationRegistry.intern(name, area);
+    }
+
+    // running one command for the logged-in user and building the reply
+    private String execute(String command, String[] parts, User currentUser) {
+        switch (command) {
+            case "REGISTER_DRIVER": {
+                String id;
+                Driver driver;
+                do {
+                    id = "DRV" + String.format("%03d", userCounter.getAndIncrement());
+                    driver = new Driver(id, parts[1], parts[2], Integer.parseInt(parts[3]), parts[4],
+                                        parts[5], parts[6], Integer.parseInt(parts[7]), Integer.parseInt(parts[8]));
+                } while (!system.registerUser(driver));
+                return "OK|" + id;
+            }
+            case "REGISTER_RIDER": {
+                String id;
+                Rider rider;
+                do {
+                    id = "RDR" + String.format("%03d", userCounter.getAndIncrement());
+                    rider = new Rider(id, parts[1], parts[2], Integer.parseInt(parts[3]), parts[4], parts[5]);
+                } while (!system.registerUser(rider));
+                return "OK|" + id;
+            }
+            case "POST": {
+                if (!(currentUser instanceof Driver)) return "ERR|Only drivers can post trips";
+                String tripId;
+                do {
+                    tripId = "TRIP" + String.format("%03d", tripCounter.getAndIncrement());
+                } while (system.getTripById(tripId) != null);
+                Location origin = postedLocation(parts[1], parts[2]);
+                Location destination = postedLocation(parts[3], parts[4]);
+                if (origin == null || destination == null) return "ERR|Too many places, pick a known one";
+                Trip trip = new Trip(tripId, (Driver) currentUser, origin, destination,
+                                     LocalDateTime.parse(parts[5], TIME_FORMAT));
+                system.postTrip(trip);
+                return "OK|" + tripId;
+            }
+            case "SEARCH": {
+                int limit = parts.length > 6 ? Integer.parseInt(parts[6]) : DEFAULT_SEARCH_LIMIT;
+                if (limit < 1 || limit > MAX_SEARCH_LIMIT) {
+                    return "ERR|Search limit must be between 1 and " + MAX_SEARCH_LIMIT;
+                }
+                // looking places up without adding them, so junk searches can't grow the registry
+                Location origin = LocationRegistry.find(parts[1], parts[2]);
+                Location destination = LocationRegistry.find(parts[3], parts[4]);
+                LocalDateTime desiredTime = LocalDateTime.parse(parts[5], TIME_FORMAT);
+                if (origin == null || destination == null) return "OK|0";
+                ArrayList<Trip> matches = system.findTopMatches(origin, destination, desiredTime, limit);
+                StringBuilder reply = new StringBuilder("OK|").append(matches.size());
+                for (Trip trip : matches) {
+                    reply.append("\nTRIP|").append(trip.getId())
+                         .append('|').append(trip.getOrigin().getName())
+                         .append('|').append(trip.getDestination().getName())
+                         .append('|').append(trip.getDepartureTime().format(TIME_FORMAT))
+                         .append('|').append(trip.getSeatsLeft())
+                         .append('|').append(String.format("%.2f", trip.calculateFarePerPerson()));
+                }
+                return reply.toString();
+            }
+            case "JOIN": {
+                if (!(currentUser instanceof Rider)) return "ERR|Only riders can join trips";
+                Trip trip = system.getTripById(parts[1].trim());
+                if (trip == null) return "ERR|Trip not found";
+                if (!trip.addPassenger(currentUser)) {
+                    String status = trip.getTripStatus();
+                    if (!status.equals("Pending")) return "ERR|Trip is " + status;
+                    return "ERR|Trip is full or you're already in it";
+                }
+                return "OK|" + String.format("%.2f", trip.calculateFarePerPerson());
+            }
+            case "START":
+            case "COMPLETE": {
+                if (!(currentUser instanceof Driver)) return "ERR|Only drivers can start or complete trips";
+                Trip trip = system.getTripById(parts[1].trim());
+                if (trip == null) return "ERR|Trip not found";
+                if (!trip.getDriver().getId().equals(currentUser.getId())) return "ERR|Not your trip";
+                boolean changed = command.equals("START") ? trip.startTrip() : trip.completeTrip();
+                if (!changed) return "ERR|Trip is " + trip.getTripStatus();
+                return "OK|" + trip.getTripStatus();
+            }
+            default:
+                return "ERR|Unknown command " + command;
+        }
+    }
+}
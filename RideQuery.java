@@ -0,0 +1,40 @@
+import java.time.LocalDateTime;
+
+public class RideQuery {
+    // storing what a rider is searching for
+    private final User rider;
+    private final Location origin;
+    private final Location destination;
+    private final LocalDateTime desiredTime;
+    
+    // creating a new search request
+    public RideQuery(Location origin, Location destination, LocalDateTime desiredTime) {
+        this(null, origin, destination, desiredTime);
+    }
+    
+    // creating a search request on behalf of a rider who wants a seat assigned
+    public RideQuery(User rider, Location origin, Location destination, LocalDateTime desiredTime) {
+        this.rider = rider;
+        this.origin = origin;
+        this.destination = destination;
+        this.desiredTime = desiredTime;
+    }
+    
+    // getting the search details
+    public User getRider() { return rider; }
+    public Location getOrigin() { return origin; }
+    public Location getDestination() { return destination; }
+    public LocalDateTime getDesiredTime() { return desiredTime; }
+    
+    // building a key shared by queries for the same route, from the registry ids
+    public String getRouteKey() {
+        return origin.getNameId() + ":" + origin.getAreaId() + ":" +
+               destination.getNameId() + ":" + destination.getAreaId();
+    }
+    
+    // displaying the query in a readable format
+    @Override
+    public String toString() {
+        return String.format("%s -> %s at %s", origin, destination, desiredTime);
+    }
+}
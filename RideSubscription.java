@@ -0,0 +1,46 @@
+import java.time.LocalDateTime;
+
+public class RideSubscription {
+    // storing the route and time window a rider wants to be told about
+    private final User rider;
+    private final Location origin;
+    private final Location destination;
+    private final LocalDateTime windowStart;
+    private final LocalDateTime windowEnd;
+    private final RideAlertListener listener;
+    
+    // creating a new subscription
+    public RideSubscription(User rider, Location origin, Location destination,
+                            LocalDateTime windowStart, LocalDateTime windowEnd,
+                            RideAlertListener listener) {
+        this.rider = rider;
+        this.origin = origin;
+        this.destination = destination;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.listener = listener;
+    }
+    
+    // getting the subscription details
+    public User getRider() { return rider; }
+    public Location getOrigin() { return origin; }
+    public Location getDestination() { return destination; }
+    public LocalDateTime getWindowStart() { return windowStart; }
+    public LocalDateTime getWindowEnd() { return windowEnd; }
+    public RideAlertListener getListener() { return listener; }
+    
+    // checking if a trip is on this route and leaves inside the window
+    public boolean matches(Trip trip) {
+        return Location.locationsMatch(origin, trip.getOrigin()) &&
+               Location.locationsMatch(destination, trip.getDestination()) &&
+               !trip.getDepartureTime().isBefore(windowStart) &&
+               !trip.getDepartureTime().isAfter(windowEnd);
+    }
+    
+    // displaying the subscription in a readable format
+    @Override
+    public String toString() {
+        return String.format("%s: %s -> %s between %s and %s",
+                             rider.getId(), origin, destination, windowStart, windowEnd);
+    }
+}
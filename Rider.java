@@ -1,8 +1,8 @@
 public class Rider extends User {
     // storing rider payment info and travel stats
     private String preferredPaymentMethod;
-    private double totalMoneySaved;
-    private double totalDistanceCommuted;
+    private volatile double totalMoneySaved;
+    private volatile double totalDistanceCommuted;
     
     // creating a new rider with their payment preference
     public Rider(String id, String name, String contactInfo, int age, String gender,
@@ -31,15 +31,18 @@ public class Rider extends User {
         this.preferredPaymentMethod = method;
     }
     
-    // tracking how much money rider saved by carpooling
-    public void updateSavings(double amount) {
+    // tracking how much money rider saved by carpooling, returning the amount actually added
+    // (locked because two of the rider's trips can complete at once)
+    public synchronized double updateSavings(double amount) {
         if (amount > 0) {
             this.totalMoneySaved += amount;
+            return amount;
         }
+        return 0.0;
     }
     
     // adding to total distance traveled
-    public void addToDistanceCommuted(double distance) {
+    public synchronized void addToDistanceCommuted(double distance) {
         if (distance > 0) {
             this.totalDistanceCommuted += distance;
         }
@@ -0,0 +1,284 @@
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+public class SeatAssigner {
+    // solving a window of ride requests as a min-cost max-flow so the most seats get filled
+    // requests only connect to trips on their own route, so each connected group is solved
+    // separately and the groups run in parallel
+
+    // weighting one minute of waiting the same as one cedi of fare
+    private static final long COST_PER_MINUTE = 100;
+    private static final long COST_PER_CEDI = 100;
+
+    // assigning at most one seat per request, returning the chosen trip per request (or null)
+    public static Trip[] assign(List<RideQuery> requests, List<ArrayList<Trip>> options) {
+        // numbering every trip that appears as an option
+        IdentityHashMap<Trip, Integer> tripNumbers = new IdentityHashMap<>();
+        ArrayList<Trip> trips = new ArrayList<>();
+        for (ArrayList<Trip> list : options) {
+            for (Trip trip : list) {
+                if (!tripNumbers.containsKey(trip)) {
+                    tripNumbers.put(trip, trips.size());
+                    trips.add(trip);
+                }
+            }
+        }
+
+        // joining trips that share a request into the same group
+        int[] parent = new int[trips.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        for (ArrayList<Trip> list : options) {
+            for (int i = 1; i < list.size(); i++) {
+                union(parent, tripNumbers.get(list.get(0)), tripNumbers.get(list.get(i)));
+            }
+        }
+        HashMap<Integer, ArrayList<Integer>> groups = new HashMap<>();
+        for (int r = 0; r < requests.size(); r++) {
+            if (options.get(r).isEmpty()) continue;
+            int root = find(parent, tripNumbers.get(options.get(r).get(0)));
+            groups.computeIfAbsent(root, k -> new ArrayList<>()).add(r);
+        }
+
+        // solving each group on its own, in parallel
+        List<int[]> pairs = groups.values().parallelStream()
+            .flatMap(group -> solveGroup(group, requests, options, tripNumbers).stream())
+            .collect(Collectors.toList());
+
+        Trip[] assigned = new Trip[requests.size()];
+        for (int[] pair : pairs) {
+            assigned[pair[0]] = trips.get(pair[1]);
+        }
+        return assigned;
+    }
+
+    // building and solving the flow network for one group, returning (request, trip number) pairs
+    private static List<int[]> solveGroup(ArrayList<Integer> group, List<RideQuery> requests,
+                                          List<ArrayList<Trip>> options,
+                                          IdentityHashMap<Trip, Integer> tripNumbers) {
+        // local node numbering: source, one node per request, one per trip, sink
+        IdentityHashMap<Trip, Integer> localTrips = new IdentityHashMap<>();
+        ArrayList<Trip> tripList = new ArrayList<>();
+        for (int r : group) {
+            for (Trip trip : options.get(r)) {
+                if (!localTrips.containsKey(trip)) {
+                    localTrips.put(trip, tripList.size());
+                    tripList.add(trip);
+                }
+            }
+        }
+        int source = 0;
+        int firstTrip = 1 + group.size();
+        int sink = firstTrip + tripList.size();
+        FlowGraph graph = new FlowGraph(sink + 1);
+
+        for (int i = 0; i < group.size(); i++) {
+            RideQuery request = requests.get(group.get(i));
+            graph.addEdge(source, 1 + i, 1, 0);
+            for (Trip trip : options.get(group.get(i))) {
+                if (alreadyOnTrip(trip, request.getRider())) continue;
+                graph.addEdge(1 + i, firstTrip + localTrips.get(trip), 1, cost(request, trip));
+            }
+        }
+        for (int t = 0; t < tripList.size(); t++) {
+            Trip trip = tripList.get(t);
+            int seatsLeft = trip.getSeatsLeft();
+            if (seatsLeft > 0) graph.addEdge(firstTrip + t, sink, seatsLeft, 0);
+        }
+
+        graph.minCostMaxFlow(source, sink);
+
+        // reading back which trip each request's flow went to
+        ArrayList<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < group.size(); i++) {
+            int node = graph.flowTarget(1 + i);
+            if (node >= firstTrip && node < sink) {
+                pairs.add(new int[] { group.get(i), tripNumbers.get(tripList.get(node - firstTrip)) });
+            }
+        }
+        return pairs;
+    }
+
+    // combining time difference and fare into one cost
+    private static long cost(RideQuery request, Trip trip) {
+        long minutes = Math.abs(ChronoUnit.MINUTES.between(request.getDesiredTime(), trip.getDepartureTime()));
+        return minutes * COST_PER_MINUTE + Math.round(trip.calculateFarePerPerson() * COST_PER_CEDI);
+    }
+
+    // checking if the rider is already a passenger on the trip
+    private static boolean alreadyOnTrip(Trip trip, User rider) {
+        return rider != null && trip.hasPassenger(rider.getId());
+    }
+
+    // union-find helpers for grouping trips
+    private static int find(int[] parent, int x) {
+        while (parent[x] != x) {
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+
+    // residual graph stored in flat arrays, solved with Dijkstra and node potentials
+    private static class FlowGraph {
+        private final int nodeCount;
+        private final int[] head;
+        private int[] next = new int[16];
+        private int[] to = new int[16];
+        private int[] capacity = new int[16];
+        private long[] cost = new long[16];
+        private int edgeCount = 0;
+
+        FlowGraph(int nodeCount) {
+            this.nodeCount = nodeCount;
+            this.head = new int[nodeCount];
+            Arrays.fill(head, -1);
+        }
+
+        // adding an edge and its zero-capacity reverse edge
+        void addEdge(int from, int target, int cap, long edgeCost) {
+            push(from, target, cap, edgeCost);
+            push(target, from, 0, -edgeCost);
+        }
+
+        private void push(int from, int target, int cap, long edgeCost) {
+            if (edgeCount == to.length) {
+                int size = edgeCount * 2;
+                next = Arrays.copyOf(next, size);
+                to = Arrays.copyOf(to, size);
+                capacity = Arrays.copyOf(capacity, size);
+                cost = Arrays.copyOf(cost, size);
+            }
+            to[edgeCount] = target;
+            capacity[edgeCount] = cap;
+            cost[edgeCount] = edgeCost;
+            next[edgeCount] = head[from];
+            head[from] = edgeCount++;
+        }
+
+        // primal-dual: Dijkstra sets node potentials, then every zero reduced-cost path
+        // found at that price level is augmented before searching again
+        void minCostMaxFlow(int source, int sink) {
+            long[] potential = new long[nodeCount];
+            long[] distance = new long[nodeCount];
+            int[] level = new int[nodeCount];
+            int[] currentEdge = new int[nodeCount];
+            int[] queue = new int[nodeCount];
+            int[] path = new int[nodeCount];
+
+            while (shortestDistances(source, sink, potential, distance)) {
+                // raising potentials, capped at the sink distance for nodes not settled yet
+                long sinkDistance = distance[sink];
+                for (int v = 0; v < nodeCount; v++) {
+                    potential[v] += Math.min(distance[v], sinkDistance);
+                }
+
+                // pushing flow through the admissible (zero reduced cost) edges
+                while (levelAdmissible(source, sink, potential, level, queue)) {
+                    System.arraycopy(head, 0, currentEdge, 0, nodeCount);
+                    augmentAll(source, sink, potential, level, currentEdge, path);
+                }
+            }
+        }
+
+        // Dijkstra on reduced costs, stopping once the sink is settled
+        private boolean shortestDistances(int source, int sink, long[] potential, long[] distance) {
+            Arrays.fill(distance, Long.MAX_VALUE);
+            distance[source] = 0;
+            PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+            heap.add(new long[] { 0, source });
+
+            while (!heap.isEmpty()) {
+                long[] entry = heap.poll();
+                int node = (int) entry[1];
+                if (entry[0] > distance[node]) continue;
+                if (node == sink) return true;
+                for (int e = head[node]; e != -1; e = next[e]) {
+                    if (capacity[e] <= 0) continue;
+                    int target = to[e];
+                    long reduced = distance[node] + cost[e] + potential[node] - potential[target];
+                    if (reduced < distance[target]) {
+                        distance[target] = reduced;
+                        heap.add(new long[] { reduced, target });
+                    }
+                }
+            }
+            return false;
+        }
+
+        // checking an edge has room and lies on a cheapest path
+        private boolean admissible(int from, int e, long[] potential) {
+            return capacity[e] > 0 && cost[e] + potential[from] - potential[to[e]] == 0;
+        }
+
+        // breadth-first levels over admissible edges so augmenting paths never loop
+        private boolean levelAdmissible(int source, int sink, long[] potential, int[] level, int[] queue) {
+            Arrays.fill(level, -1);
+            level[source] = 0;
+            int read = 0;
+            int write = 0;
+            queue[write++] = source;
+            while (read < write) {
+                int node = queue[read++];
+                for (int e = head[node]; e != -1; e = next[e]) {
+                    if (level[to[e]] < 0 && admissible(node, e, potential)) {
+                        level[to[e]] = level[node] + 1;
+                        queue[write++] = to[e];
+                    }
+                }
+            }
+            return level[sink] >= 0;
+        }
+
+        // walking the level graph without recursion, one seat per path
+        private void augmentAll(int source, int sink, long[] potential, int[] level,
+                                int[] currentEdge, int[] path) {
+            int depth = 0;
+            int node = source;
+            while (true) {
+                if (node == sink) {
+                    for (int i = 0; i < depth; i++) {
+                        capacity[path[i]] -= 1;
+                        capacity[path[i] ^ 1] += 1;
+                    }
+                    depth = 0;
+                    node = source;
+                    continue;
+                }
+                int e = currentEdge[node];
+                while (e != -1 && !(level[to[e]] == level[node] + 1 && admissible(node, e, potential))) {
+                    e = next[e];
+                }
+                currentEdge[node] = e;
+                if (e != -1) {
+                    path[depth++] = e;
+                    node = to[e];
+                } else {
+                    // dead end, so retreat and skip the edge that led here
+                    if (node == source) return;
+                    level[node] = -1;
+                    int back = path[--depth];
+                    node = to[back ^ 1];
+                    currentEdge[node] = next[currentEdge[node]];
+                }
+            }
+        }
+
+        // finding where the flow leaving a node went, or -1 if none
+        int flowTarget(int node) {
+            for (int e = head[node]; e != -1; e = next[e]) {
+                if ((e & 1) == 0 && capacity[e] == 0 && to[e] != 0) return to[e];
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SeatBookingStress {
+    // hammering one trip from many threads at once and checking it never overbooks; every
+    // other round a thread departs the trip and another releases holds while the joins run,
+    // with no lock shared between any of them
+    // usage: java SeatBookingStress [threads] [rounds]
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        
+        // silencing the per-join messages so printing doesn't serialize the threads
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        
+        Driver driver = new Driver("DRV-STRESS", "Stress Driver", "0000000000", 30, "Female",
+                                   "Toyota Corolla", "GR-0000-00", 5, 5);
+        int seats = driver.getCarCapacity() - 1;
+        int failures = 0;
+        
+        for (int round = 0; round < rounds; round++) {
+            boolean departing = round % 2 == 1;
+            Trip trip = new Trip("TRIP-STRESS-" + round, driver,
+                                 new Location("Ashesi University", "Berekuso"),
+                                 new Location("Accra Mall", "Tetteh Quarshie"),
+                                 LocalDateTime.now().plusDays(1));
+            
+            // every thread waits on the gate so they all hit the trip together
+            CountDownLatch gate = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads + (departing ? 2 : 0));
+            AtomicInteger accepted = new AtomicInteger();
+            ArrayList<SeatHold> held = new ArrayList<>();
+            String[] departedAs = new String[1];
+            
+            for (int t = 0; t < threads; t++) {
+                // half the threads share a rider id to exercise the duplicate check too, and
+                // in departing rounds every fourth one holds a seat before confirming it
+                String riderId = (t % 2 == 0) ? "RDR" + t : "RDR" + (t - 1);
+                Rider rider = new Rider(riderId, "Rider " + t, "0000000000", 20, "Female", "Cash");
+                boolean holding = departing && t % 4 == 0;
+                start(gate, done, () -> {
+                    if (!holding) {
+                        if (trip.addPassenger(rider)) accepted.incrementAndGet();
+                        return;
+                    }
+                    SeatHold hold = trip.holdSeat(rider, Long.MAX_VALUE);
+                    if (hold == null) return;
+                    synchronized (held) {
+                        held.add(hold);
+                    }
+                    if (ThreadLocalRandom.current().nextBoolean() && trip.confirmHold(hold)) {
+                        accepted.incrementAndGet();
+                    }
+                });
+            }
+            if (departing) {
+                // departing after a random spin so it lands anywhere among the joins
+                start(gate, done, () -> {
+                    for (int spin = ThreadLocalRandom.current().nextInt(20_000); spin > 0; spin--) {
+                        Thread.onSpinWait();
+                    }
+                    departedAs[0] = trip.depart();
+                });
+                start(gate, done, () -> {
+                    for (int pass = 0; pass < 50; pass++) {
+                        SeatHold[] current;
+                        synchronized (held) {
+                            current = held.toArray(new SeatHold[0]);
+                        }
+                        for (SeatHold hold : current) trip.releaseHold(hold);
+                        Thread.yield();
+                    }
+                });
+            }
+            
+            gate.countDown();
+            done.await();
+            
+            // checking the seat count, the passenger list and the accepted joins all agree, and
+            // that a departed trip left with exactly the riders it counted and no seats held
+            HashSet<String> ids = new HashSet<>();
+            for (User passenger : trip.getPassengers()) {
+                ids.add(passenger.getId());
+            }
+            int count = trip.getPassengerCount();
+            boolean ok = count == accepted.get() &&
+                         trip.getPassengers().size() == count &&
+                         ids.size() == count &&
+                         count <= seats;
+            if (departing) {
+                ok = ok && trip.getHeldSeatCount() == 0 &&
+                     trip.getSeatsLeft() == seats - count &&
+                     departedAs[0].equals(count > 0 ? "Active" : "Expired") &&
+                     trip.getTripStatus().equals(departedAs[0]);
+            } else {
+                ok = ok && count == seats;
+            }
+            if (!ok) {
+                failures++;
+                console.printf("Round %d FAILED: count=%d accepted=%d passengers=%d unique=%d " +
+                               "held=%d seatsLeft=%d status=%s seats=%d%n",
+                               round, count, accepted.get(), trip.getPassengers().size(), ids.size(),
+                               trip.getHeldSeatCount(), trip.getSeatsLeft(), trip.getTripStatus(), seats);
+            }
+        }
+        
+        System.setOut(console);
+        System.out.printf("%d rounds x %d threads: %d failure(s)%n", rounds, threads, failures);
+        if (failures > 0) System.exit(1);
+    }
+    
+    // starting a thread that waits on the gate, runs the work and counts itself done
+    private static void start(CountDownLatch gate, CountDownLatch done, Runnable work) {
+        new Thread(() -> {
+            try {
+                gate.await();
+                work.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }).start();
+    }
+}
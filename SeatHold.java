@@ -0,0 +1,29 @@
+public class SeatHold {
+    // storing a short-lived seat reservation waiting for the rider to confirm
+    private final Trip trip;
+    private final User rider;
+    private final long expiresAtMillis;
+    private volatile TimingWheel.Timeout expiry;
+    
+    // creating a hold that lapses at the given time
+    public SeatHold(Trip trip, User rider, long expiresAtMillis) {
+        this.trip = trip;
+        this.rider = rider;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+    
+    // getting the hold details
+    public Trip getTrip() { return trip; }
+    public User getRider() { return rider; }
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+    
+    // linking the timer that will release this hold
+    public TimingWheel.Timeout getExpiry() { return expiry; }
+    public void setExpiry(TimingWheel.Timeout expiry) { this.expiry = expiry; }
+    
+    // displaying the hold in a readable format
+    @Override
+    public String toString() {
+        return String.format("Hold on %s for %s", trip.getId(), rider.getName());
+    }
+}
@@ -0,0 +1,406 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+public class Snapshot {
+    // a versioned binary copy of every user and trip, including passengers and trip status
+    //
+    // file layout: [int magic][int version] then blocks of [byte type][int length][int crc32c][payload]
+    //   USERS      users in registration order; trips refer to them by position
+    //   LOCATIONS  every distinct name/area pair once; trips refer to them by position
+    //   TRIPS      trips in posting order, split into blocks so they can be decoded in parallel
+    //   END        marks a complete file
+    // strings are [varint length][utf-8 bytes] and departures are epoch minutes
+    public static final String DEFAULT_FILE = "ridelink.snapshot";
+
+    private static final int MAGIC = 0x524C5350; // "RLSP"
+    private static final int VERSION = 1;
+
+    private static final byte USERS = 1;
+    private static final byte LOCATIONS = 2;
+    private static final byte TRIPS = 3;
+    private static final byte END = 4;
+
+    private static final byte DRIVER = 1;
+    private static final byte RIDER = 2;
+
+    // status codes, with anything else written out as text after OTHER
+    private static final String[] STATUSES = { "Pending", "Active", "Completed" };
+    private static final byte OTHER = 3;
+
+    private static final int BLOCK_BYTES = 4 * 1024 * 1024;
+
+    // what a snapshot held, in the order it was saved
+    public static class Contents {
+        private final ArrayList<User> users;
+        private final ArrayList<Trip> trips;
+
+        Contents(ArrayList<User> users, ArrayList<Trip> trips) {
+            this.users = users;
+            this.trips = trips;
+        }
+
+        public ArrayList<User> getUsers() { return users; }
+        public ArrayList<Trip> getTrips() { return trips; }
+    }
+
+    // not meant to be created, everything is static
+    private Snapshot() {
+    }
+
+    // writing users and trips to a temporary file, then moving it over the old snapshot
+    // so a crash mid-save leaves the previous snapshot in place
+    public static void write(Path file, List<User> users, List<Trip> trips) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION);
+            header.flip();
+            writeFully(channel, header);
+
+            // users, numbered by position
+            IdentityHashMap<User, Integer> userNumbers = new IdentityHashMap<>();
+            Block block = new Block(USERS);
+            for (User user : users) {
+                userNumbers.put(user, userNumbers.size());
+                block.out = writeUser(block.start(), user);
+                if (block.full()) block.flush(channel);
+            }
+            block.flush(channel);
+
+            // locations, numbered by position in first-seen order
+            IdentityHashMap<Location, Integer> locationNumbers = new IdentityHashMap<>();
+            HashMap<Long, Integer> locationsByIds = new HashMap<>();
+            block = new Block(LOCATIONS);
+            for (Trip trip : trips) {
+                for (Location location : new Location[] { trip.getOrigin(), trip.getDestination() }) {
+                    if (locationNumbers.containsKey(location)) continue;
+                    long key = ((long) location.getNameId() << 32) | (location.getAreaId() & 0xFFFFFFFFL);
+                    Integer number = locationsByIds.get(key);
+                    if (number == null) {
+                        number = locationsByIds.size();
+                        locationsByIds.put(key, number);
+                        ByteBuffer out = block.start();
+                        out = putString(out, location.getName());
+                        block.out = putString(out, location.getArea());
+                        if (block.full()) block.flush(channel);
+                    }
+                    locationNumbers.put(location, number);
+                }
+            }
+            block.flush(channel);
+
+            // trips, with driver, locations and passengers as numbers
+            block = new Block(TRIPS);
+            for (Trip trip : trips) {
+                Integer driver = userNumbers.get(trip.getDriver());
+                if (driver == null) continue;
+                ByteBuffer out = block.start();
+                out = putString(out, trip.getId());
+                out = putVarint(out, driver);
+                out = putVarint(out, locationNumbers.get(trip.getOrigin()));
+                out = putVarint(out, locationNumbers.get(trip.getDestination()));
+                out = ensure(out, 8);
+                out.putLong(TripIndex.epochMinute(trip.getDepartureTime()));
+                // reading status and passengers under the trip's lock, which status changes
+                // hold; joins list the rider before journaling, so one missed here is replayed
+                String status;
+                ArrayList<Integer> passengers = new ArrayList<>();
+                synchronized (trip) {
+                    status = trip.getTripStatus();
+                    for (User passenger : trip.getPassengers()) {
+                        Integer number = userNumbers.get(passenger);
+                        if (number != null) passengers.add(number);
+                    }
+                }
+                out = putStatus(out, status);
+                out = putVarint(out, passengers.size());
+                for (int number : passengers) out = putVarint(out, number);
+                block.out = out;
+                if (block.full()) block.flush(channel);
+            }
+            block.flush(channel);
+
+            new Block(END).flush(channel, true);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // reading a snapshot back; trip blocks are checked and decoded in parallel
+    public static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC) throw new IOException(file + " is not a RideLink snapshot");
+            int version = header.getInt(4);
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+
+            ArrayList<User> users = new ArrayList<>();
+            ArrayList<Location> locations = new ArrayList<>();
+            ArrayList<MappedByteBuffer> tripBlocks = new ArrayList<>();
+            ArrayList<Integer> tripChecksums = new ArrayList<>();
+            long position = 8;
+            boolean ended = false;
+            ByteBuffer blockHeader = ByteBuffer.allocate(9);
+            while (!ended) {
+                blockHeader.clear();
+                readFully(channel, blockHeader, position);
+                byte type = blockHeader.get(0);
+                int length = blockHeader.getInt(1);
+                int checksum = blockHeader.getInt(5);
+                position += 9;
+                if (length < 0 || position + length > channel.size()) throw new IOException("Snapshot is truncated");
+                MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                position += length;
+
+                switch (type) {
+                    case USERS:
+                        check(payload, checksum);
+                        while (payload.hasRemaining()) users.add(readUser(payload));
+                        break;
+                    case LOCATIONS:
+                        check(payload, checksum);
+                        while (payload.hasRemaining()) {
+                            locations.add(LocationRegistry.intern(getString(payload), getString(payload)));
+                        }
+                        break;
+                    case TRIPS:
+                        tripBlocks.add(payload);
+                        tripChecksums.add(checksum);
+                        break;
+                    case END:
+                        check(payload, checksum);
+                        ended = true;
+                        break;
+                    default:
+                        throw new IOException("Unknown snapshot block type " + type);
+                }
+            }
+
+            List<ArrayList<Trip>> parts;
+            try {
+                parts = IntStream.range(0, tripBlocks.size()).parallel()
+                    .mapToObj(i -> readTrips(tripBlocks.get(i), tripChecksums.get(i), users, locations))
+                    .collect(Collectors.toList());
+            } catch (IllegalStateException e) {
+                throw new IOException(e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e);
+            }
+            int total = 0;
+            for (ArrayList<Trip> part : parts) total += part.size();
+            ArrayList<Trip> trips = new ArrayList<>(total);
+            for (ArrayList<Trip> part : parts) trips.addAll(part);
+            return new Contents(users, trips);
+        }
+    }
+
+    private static ByteBuffer writeUser(ByteBuffer out, User user) {
+        out = ensure(out, 1);
+        out.put(user instanceof Driver ? DRIVER : RIDER);
+        out = putString(out, user.getId());
+        out = putString(out, user.getName());
+        out = putString(out, user.getContactInfo());
+        out = putVarint(out, user.getAge());
+        out = putString(out, user.getGender());
+        if (user instanceof Driver) {
+            Driver driver = (Driver) user;
+            out = putString(out, driver.getCarModel());
+            out = putString(out, driver.getCarPlateNumber());
+            out = putVarint(out, driver.getCarCapacity());
+            out = putVarint(out, driver.getYearsExperience());
+        } else {
+            Rider rider = (Rider) user;
+            out = putString(out, rider.getPreferredPaymentMethod());
+            out = ensure(out, 16);
+            out.putDouble(rider.getTotalMoneySaved());
+            out.putDouble(rider.getTotalDistanceCommuted());
+        }
+        return out;
+    }
+
+    private static User readUser(ByteBuffer in) {
+        byte type = in.get();
+        String id = getString(in);
+        String name = getString(in);
+        String contact = getString(in);
+        int age = getVarint(in);
+        String gender = getString(in);
+        if (type == DRIVER) {
+            return new Driver(id, name, contact, age, gender, getString(in), getString(in),
+                              getVarint(in), getVarint(in));
+        }
+        Rider rider = new Rider(id, name, contact, age, gender, getString(in));
+        rider.updateSavings(in.getDouble());
+        rider.addToDistanceCommuted(in.getDouble());
+        return rider;
+    }
+
+    // decoding one block of trips, checking its checksum first
+    private static ArrayList<Trip> readTrips(MappedByteBuffer in, int checksum, ArrayList<User> users,
+                                             ArrayList<Location> locations) {
+        try {
+            check(in, checksum);
+        } catch (IOException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        ArrayList<Trip> trips = new ArrayList<>();
+        ArrayList<User> passengers = new ArrayList<>();
+        while (in.hasRemaining()) {
+            String id = getString(in);
+            Driver driver = (Driver) users.get(getVarint(in));
+            Location origin = locations.get(getVarint(in));
+            Location destination = locations.get(getVarint(in));
+            LocalDateTime departure = LocalDateTime.ofEpochSecond(in.getLong() * 60, 0, ZoneOffset.UTC);
+            String status = getStatus(in);
+            int passengerCount = getVarint(in);
+            passengers.clear();
+            for (int i = 0; i < passengerCount; i++) {
+                passengers.add(users.get(getVarint(in)));
+            }
+
+            Trip trip = new Trip(id, driver, origin, destination, departure);
+            trip.restore(status, passengers);
+            trips.add(trip);
+        }
+        return trips;
+    }
+
+    // comparing a block's checksum with the one stored in its header
+    private static void check(ByteBuffer payload, int checksum) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) throw new IOException("Snapshot block failed its checksum");
+    }
+
+    private static ByteBuffer putStatus(ByteBuffer out, String status) {
+        for (byte code = 0; code < STATUSES.length; code++) {
+            if (STATUSES[code].equals(status)) {
+                out = ensure(out, 1);
+                out.put(code);
+                return out;
+            }
+        }
+        out = ensure(out, 1);
+        out.put(OTHER);
+        return putString(out, status);
+    }
+
+    private static String getStatus(ByteBuffer in) {
+        byte code = in.get();
+        return code == OTHER ? getString(in) : STATUSES[code];
+    }
+
+    private static ByteBuffer putString(ByteBuffer out, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out = putVarint(out, bytes.length);
+        out = ensure(out, bytes.length);
+        out.put(bytes);
+        return out;
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        if (in.hasArray()) {
+            String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // seven bits per byte, high bit set while more bytes follow
+    private static ByteBuffer putVarint(ByteBuffer out, int value) {
+        out = ensure(out, 5);
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+        return out;
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    // growing a buffer so the next write fits
+    private static ByteBuffer ensure(ByteBuffer out, int needed) {
+        if (out.remaining() >= needed) return out;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + needed));
+        out.flip();
+        bigger.put(out);
+        return bigger;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new IOException("Snapshot ended early");
+        }
+    }
+
+    // one block being filled, written out with its checksum once full
+    private static class Block {
+        private final byte type;
+        private ByteBuffer out = ByteBuffer.allocate(BLOCK_BYTES + 64 * 1024);
+        private boolean empty = true;
+
+        Block(byte type) {
+            this.type = type;
+        }
+
+        // getting the buffer to append the next entry to
+        ByteBuffer start() {
+            empty = false;
+            return out;
+        }
+
+        boolean full() {
+            return out.position() >= BLOCK_BYTES;
+        }
+
+        void flush(FileChannel channel) throws IOException {
+            flush(channel, false);
+        }
+
+        // writing the block if it holds anything (or always, for END) and starting a new one
+        void flush(FileChannel channel, boolean always) throws IOException {
+            if (empty && !always) return;
+            CRC32C crc = new CRC32C();
+            crc.update(out.array(), 0, out.position());
+            ByteBuffer header = ByteBuffer.allocate(9).put(type).putInt(out.position()).putInt((int) crc.getValue());
+            header.flip();
+            out.flip();
+            writeFully(channel, header);
+            writeFully(channel, out);
+            out.clear();
+            empty = true;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class SubscriptionIndex {
+    // subscriptions filed under every route key and hour of their window,
+    // so a new trip only has to look in its own route and hour
+    // lookups never lock, apart from the first one each hour dropping the hours gone by;
+    // subscribing and unsubscribing lock the index
+    private final ConcurrentHashMap<Long, ConcurrentSkipListMap<Long, CopyOnWriteArrayList<RideSubscription>>> buckets;
+    
+    // hours before this one have already been dropped from every route
+    private volatile long prunedBeforeHour = Long.MIN_VALUE;
+    
+    // creating an empty index
+    public SubscriptionIndex() {
+        this.buckets = new ConcurrentHashMap<>();
+    }
+    
+    // filing a subscription under each route key for each hour it covers that hasn't gone by
+    public synchronized void add(RideSubscription subscription) {
+        long firstHour = Math.max(prunedBeforeHour, hourOf(TripIndex.epochMinute(subscription.getWindowStart())));
+        long lastHour = hourOf(TripIndex.epochMinute(subscription.getWindowEnd()));
+        for (long routeKey : TripIndex.routeKeys(subscription.getOrigin(), subscription.getDestination())) {
+            ConcurrentSkipListMap<Long, CopyOnWriteArrayList<RideSubscription>> byHour =
+                buckets.computeIfAbsent(routeKey, k -> new ConcurrentSkipListMap<>());
+            for (long hour = firstHour; hour <= lastHour; hour++) {
+                byHour.computeIfAbsent(hour, h -> new CopyOnWriteArrayList<>()).add(subscription);
+            }
+        }
+    }
+    
+    // taking a subscription out of every bucket it was filed in
+    public synchronized void remove(RideSubscription subscription) {
+        long firstHour = hourOf(TripIndex.epochMinute(subscription.getWindowStart()));
+        long lastHour = hourOf(TripIndex.epochMinute(subscription.getWindowEnd()));
+        for (long routeKey : TripIndex.routeKeys(subscription.getOrigin(), subscription.getDestination())) {
+            ConcurrentSkipListMap<Long, CopyOnWriteArrayList<RideSubscription>> byHour = buckets.get(routeKey);
+            if (byHour == null) continue;
+            for (long hour = firstHour; hour <= lastHour; hour++) {
+                CopyOnWriteArrayList<RideSubscription> bucket = byHour.get(hour);
+                if (bucket == null) continue;
+                bucket.remove(subscription);
+                if (bucket.isEmpty()) byHour.remove(hour);
+            }
+            if (byHour.isEmpty()) buckets.remove(routeKey);
+        }
+    }
+    
+    // dropping the buckets for hours that have gone by, so subscriptions whose window has passed
+    // don't pile up; only locks the first time it's called in a new hour
+    public void removeExpired(LocalDateTime now) {
+        long hour = hourOf(TripIndex.epochMinute(now));
+        if (hour <= prunedBeforeHour) return;
+        synchronized (this) {
+            if (hour <= prunedBeforeHour) return;
+            for (Long routeKey : buckets.keySet()) {
+                ConcurrentSkipListMap<Long, CopyOnWriteArrayList<RideSubscription>> byHour = buckets.get(routeKey);
+                byHour.headMap(hour).clear();
+                if (byHour.isEmpty()) buckets.remove(routeKey);
+            }
+            prunedBeforeHour = hour;
+        }
+    }
+    
+    // finding the subscriptions a newly posted trip satisfies, skipping any whose window has
+    // already closed, and dropping the hours that have gone by first
+    public ArrayList<RideSubscription> matching(Trip trip) {
+        LocalDateTime now = LocalDateTime.now();
+        removeExpired(now);
+        long hour = hourOf(TripIndex.epochMinute(trip.getDepartureTime()));
+        LinkedHashSet<RideSubscription> found = new LinkedHashSet<>();
+        for (long routeKey : TripIndex.routeKeys(trip.getOrigin(), trip.getDestination())) {
+            ConcurrentSkipListMap<Long, CopyOnWriteArrayList<RideSubscription>> byHour = buckets.get(routeKey);
+            if (byHour == null) continue;
+            CopyOnWriteArrayList<RideSubscription> bucket = byHour.get(hour);
+            if (bucket == null) continue;
+            for (RideSubscription subscription : bucket) {
+                if (!subscription.getWindowEnd().isBefore(now) && subscription.matches(trip)) {
+                    found.add(subscription);
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+    
+    // grouping minutes into hour buckets
+    private static long hourOf(long epochMinute) {
+        return Math.floorDiv(epochMinute, 60);
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class TimingWheel {
+    // a hashed timing wheel: timeouts are dropped into the slot for their deadline and one
+    // background thread visits a slot per tick, so scheduling, cancelling and expiring are
+    // all O(1) no matter how many timeouts are outstanding
+    private final long tickMillis;
+    private final ArrayDeque<Timeout>[] slots;
+    private final ConcurrentLinkedQueue<Timeout> pending;
+    private final String name;
+    
+    private volatile Thread worker;
+    private volatile boolean running;
+    private long startMillis;
+    private long currentTick;
+    
+    // creating a wheel with the given tick length and number of slots
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(String name, long tickMillis, int slotCount) {
+        this.name = name;
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayDeque[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.pending = new ConcurrentLinkedQueue<>();
+    }
+    
+    // scheduling a task to run after the delay, starting the worker on first use
+    public Timeout schedule(Runnable task, long delayMillis) {
+        if (worker == null) start();
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(0, delayMillis));
+        pending.add(timeout);
+        return timeout;
+    }
+    
+    // stopping the worker thread, outstanding timeouts never fire
+    public synchronized void stop() {
+        running = false;
+        if (worker != null) worker.interrupt();
+        worker = null;
+    }
+    
+    // starting the background thread that turns the wheel
+    private synchronized void start() {
+        if (worker != null) return;
+        running = true;
+        startMillis = System.currentTimeMillis();
+        currentTick = 0;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    // visiting one slot per tick until stopped
+    private void run() {
+        while (running) {
+            long nextTickAt = startMillis + (currentTick + 1) * tickMillis;
+            long sleep = nextTickAt - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            currentTick++;
+            transferPending();
+            expireSlot(slots[(int) (currentTick % slots.length)]);
+        }
+    }
+    
+    // moving newly scheduled timeouts into the slot for their deadline
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long deadlineTick = Math.max(currentTick, (timeout.deadline - startMillis + tickMillis - 1) / tickMillis);
+            timeout.remainingRounds = (deadlineTick - currentTick) / slots.length;
+            slots[(int) (deadlineTick % slots.length)].add(timeout);
+        }
+    }
+    
+    // running due timeouts in a slot and keeping the ones due on a later turn
+    private void expireSlot(ArrayDeque<Timeout> slot) {
+        int count = slot.size();
+        for (int i = 0; i < count; i++) {
+            Timeout timeout = slot.poll();
+            if (timeout.cancelled) continue;
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                slot.add(timeout);
+                continue;
+            }
+            timeout.fired = true;
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                System.out.println("Error in timer task: " + e.getMessage());
+            }
+        }
+    }
+    
+    // a scheduled task that can be cancelled before it fires
+    public static class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+        private volatile boolean fired;
+        
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+        
+        // cancelling the task, it is dropped the next time its slot is visited
+        public boolean cancel() {
+            if (fired) return false;
+            cancelled = true;
+            return true;
+        }
+        
+        public boolean isCancelled() { return cancelled; }
+        public boolean hasFired() { return fired; }
+    }
+}
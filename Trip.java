@@ -1,18 +1,38 @@
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Trip {
     // storing all trip details and tracking status
     private String id;
     private Driver driver;
-    private ArrayList<User> passengers;
-    private int passengerCount;
+    private List<User> passengers;
+    
+    // seats are claimed with compare-and-set so concurrent joins never overbook;
+    // seatsTaken counts confirmed passengers plus riders holding a seat
+    private final AtomicInteger seatsTaken;
+    
+    // confirmed passengers, with a flag bit set once boarding closes; a join is only counted by
+    // a compare-and-set that sees the flag clear, so departing and joining need no shared lock
+    private final AtomicInteger boarding;
+    private static final int BOARDING_CLOSED = 1 << 30;
+    private final Set<String> passengerIds;
+    private final ConcurrentHashMap<String, SeatHold> holds;
     private Location origin;
     private Location destination;
     private LocalDateTime departureTime;
     private double tripDistanceKm;
-    private String tripStatus;
+    private volatile String tripStatus;
+    
+    // notified when seats or status change so indexes stay up to date
+    private volatile TripListener listener;
+    
+    // printing join and status messages, turned off when serving many clients at once
+    private static volatile boolean verbose = true;
     
     // constants for fare calculations
     private static final double FUEL_COST_PER_KM = 2.5;
@@ -26,8 +46,11 @@ public class Trip {
         this.origin = origin;
         this.destination = destination;
         this.departureTime = departureTime;
-        this.passengers = new ArrayList<>();
-        this.passengerCount = 0;
+        this.passengers = new CopyOnWriteArrayList<>();
+        this.seatsTaken = new AtomicInteger();
+        this.boarding = new AtomicInteger();
+        this.passengerIds = ConcurrentHashMap.newKeySet();
+        this.holds = new ConcurrentHashMap<>();
         this.tripDistanceKm = 10.0; // fixed distance for all trips
         this.tripStatus = "Pending";
     }
@@ -35,59 +58,224 @@ public class Trip {
     // getting all trip information
     public String getId() { return id; }
     public Driver getDriver() { return driver; }
-    public ArrayList<User> getPassengers() { return passengers; }
-    public int getPassengerCount() { return passengerCount; }
+    public List<User> getPassengers() { return passengers; }
+    public int getPassengerCount() { return boarding.get() & ~BOARDING_CLOSED; }
+    public int getHeldSeatCount() { return holds.size(); }
+    public int getSeatsLeft() { return driver.getCarCapacity() - 1 - seatsTaken.get(); }
     public Location getOrigin() { return origin; }
     public Location getDestination() { return destination; }
     public LocalDateTime getDepartureTime() { return departureTime; }
     public double getTripDistanceKm() { return tripDistanceKm; }
     public String getTripStatus() { return tripStatus; }
     
-    // adding a passenger if there's space and they're not already in the trip
+    // turning the console messages for all trips on or off
+    public static void setVerbose(boolean enabled) { verbose = enabled; }
+    
+    // registering who gets told about changes to this trip
+    public void setListener(TripListener listener) { this.listener = listener; }
+    
+    // checking if riders can still book a seat on this trip
+    public boolean isOpenForBooking() {
+        return tripStatus.equals("Pending") && getSeatsLeft() > 0;
+    }
+    
+    // adding a passenger if the trip is still pending, there's space and they're not already in it;
+    // the seat is taken first and the rider only counts once boarding() confirms it, so a trip
+    // that departs meanwhile turns the join away instead of leaving with an uncounted rider
     public boolean addPassenger(User rider) {
-        if (passengerCount >= (driver.getCarCapacity() - 1)) {
-            System.out.println("Sorry, this trip is full!");
+        if (!tripStatus.equals("Pending")) {
+            log("Cannot join trip - current status: " + tripStatus);
+            return false;
+        }
+        if (!passengerIds.add(rider.getId())) {
+            log("This rider is already in this trip!");
             return false;
         }
         
-        for (User p : passengers) {
-            if (p.getId().equals(rider.getId())) {
-                System.out.println("This rider is already in this trip!");
-                return false;
-            }
+        if (!reserveSeat()) {
+            passengerIds.remove(rider.getId());
+            log("Sorry, this trip is full!");
+            return false;
+        }
+        
+        if (!board()) {
+            seatsTaken.decrementAndGet();
+            passengerIds.remove(rider.getId());
+            log("Cannot join trip - current status: " + tripStatus);
+            return false;
+        }
+        return saveJoin(rider, null);
+    }
+    
+    // holding a seat for a rider who still has to confirm, counting against capacity; a hold
+    // that lands after boarding closed is taken back here unless depart already dropped it
+    public SeatHold holdSeat(User rider, long expiresAtMillis) {
+        if (!tripStatus.equals("Pending")) {
+            log("Cannot hold a seat - current status: " + tripStatus);
+            return null;
+        }
+        if (!passengerIds.add(rider.getId())) {
+            log("This rider is already in this trip!");
+            return null;
+        }
+        if (!reserveSeat()) {
+            passengerIds.remove(rider.getId());
+            log("Sorry, this trip is full!");
+            return null;
+        }
+        
+        SeatHold hold = new SeatHold(this, rider, expiresAtMillis);
+        holds.put(rider.getId(), hold);
+        if ((boarding.get() & BOARDING_CLOSED) != 0) {
+            dropHold(hold);
+            log("Cannot hold a seat - current status: " + tripStatus);
+            return null;
+        }
+        if (listener != null) listener.seatsChanged(this);
+        return hold;
+    }
+    
+    // turning a hold into a booked seat, failing if it already lapsed or the trip is no longer
+    // pending; taking the hold out first means depart, expiry and this can't all claim it
+    public boolean confirmHold(SeatHold hold) {
+        if (!tripStatus.equals("Pending")) {
+            log("Cannot confirm seat - current status: " + tripStatus);
+            return false;
+        }
+        User rider = hold.getRider();
+        if (!holds.remove(rider.getId(), hold)) {
+            log("Sorry, this seat hold has expired!");
+            return false;
         }
         
+        if (!board()) {
+            // boarding closed after the hold was taken out, so the seat is given back here
+            seatsTaken.decrementAndGet();
+            passengerIds.remove(rider.getId());
+            if (listener != null) listener.seatsChanged(this);
+            log("Cannot confirm seat - current status: " + tripStatus);
+            return false;
+        }
+        return saveJoin(rider, hold);
+    }
+    
+    // counting one more confirmed passenger, unless boarding has already closed
+    private boolean board() {
+        while (true) {
+            int current = boarding.get();
+            if ((current & BOARDING_CLOSED) != 0) return false;
+            if (boarding.compareAndSet(current, current + 1)) return true;
+        }
+    }
+    
+    // closing boarding and returning how many passengers made it on
+    private int closeBoarding() {
+        return boarding.getAndUpdate(current -> current | BOARDING_CLOSED) & ~BOARDING_CLOSED;
+    }
+    
+    // listing a counted rider and telling the listener, which journals the join without any
+    // lock held; if that fails the rider is taken back off (or back to holding their seat)
+    private boolean saveJoin(User rider, SeatHold hold) {
         passengers.add(rider);
-        passengerCount++;
-        System.out.println(rider.getName() + " has been added to the trip!");
+        try {
+            if (listener != null) listener.passengerAdded(this, rider);
+        } catch (RuntimeException e) {
+            passengers.remove(rider);
+            boarding.decrementAndGet();
+            if (hold != null) {
+                holds.put(rider.getId(), hold);
+            } else {
+                seatsTaken.decrementAndGet();
+                passengerIds.remove(rider.getId());
+            }
+            throw e;
+        }
+        log(rider.getName() + " has been added to the trip!");
         return true;
     }
     
-    // starting the trip if it's still pending
-    public void startTrip() {
-        if (tripStatus.equals("Pending")) {
-            tripStatus = "Active";
-            System.out.println("Trip " + id + " has started! Drive safe!");
-        } else {
-            System.out.println("Cannot start trip - current status: " + tripStatus);
+    // giving a held seat back, returning false if it was already confirmed or released
+    public boolean releaseHold(SeatHold hold) {
+        if (!dropHold(hold)) return false;
+        if (listener != null) listener.seatsChanged(this);
+        return true;
+    }
+    
+    // freeing a held seat and the rider's place on the trip, if the hold is still outstanding
+    private boolean dropHold(SeatHold hold) {
+        String riderId = hold.getRider().getId();
+        if (!holds.remove(riderId, hold)) return false;
+        
+        seatsTaken.decrementAndGet();
+        passengerIds.remove(riderId);
+        return true;
+    }
+    
+    // checking if a rider already has a seat (or a hold on one) on this trip
+    public boolean hasPassenger(String riderId) {
+        return passengerIds.contains(riderId);
+    }
+    
+    // taking one seat if any are left, retrying when another thread got there first
+    private boolean reserveSeat() {
+        int seats = driver.getCarCapacity() - 1;
+        while (true) {
+            int taken = seatsTaken.get();
+            if (taken >= seats) return false;
+            if (seatsTaken.compareAndSet(taken, taken + 1)) return true;
         }
     }
     
+    // starting the trip if it's still pending, returning whether it did
+    public synchronized boolean startTrip() {
+        if (!tripStatus.equals("Pending")) {
+            log("Cannot start trip - current status: " + tripStatus);
+            return false;
+        }
+        closeBoarding();
+        tripStatus = "Active";
+        log("Trip " + id + " has started! Drive safe!");
+        if (listener != null) listener.statusChanged(this, "Pending");
+        return true;
+    }
+    
     // getting trip status
     public String getStatus() {
         return tripStatus;
     }
     
     // setting trip status
-    public void setStatus(String status) {
+    public synchronized void setStatus(String status) {
+        String previousStatus = tripStatus;
+        if (status.equals("Pending")) {
+            boarding.getAndUpdate(current -> current & ~BOARDING_CLOSED);
+        } else {
+            closeBoarding();
+        }
         this.tripStatus = status;
+        if (listener != null) listener.statusChanged(this, previousStatus);
     }
     
-    // completing the trip and updating all stats for driver and riders
-    public void completeTrip() {
+    // closing boarding at departure: a trip with confirmed riders sets off and a trip without
+    // any expires, then holds nobody confirmed in time lapse; returns the status it ends up with
+    public synchronized String depart() {
+        if (!tripStatus.equals("Pending")) return tripStatus;
+        int boarded = closeBoarding();
+        for (SeatHold hold : holds.values()) {
+            dropHold(hold);
+        }
+        tripStatus = boarded > 0 ? "Active" : "Expired";
+        log(tripStatus.equals("Active") ? "Trip " + id + " has departed! Drive safe!"
+                                        : "Trip " + id + " expired - nobody booked a seat");
+        if (listener != null) listener.statusChanged(this, "Pending");
+        return tripStatus;
+    }
+    
+    // completing the trip and updating all stats for driver and riders, returning whether it did
+    public synchronized boolean completeTrip() {
         if (!tripStatus.equals("Active")) {
-            System.out.println("Cannot complete trip - must be active first!");
-            return;
+            log("Cannot complete trip - must be active first!");
+            return false;
         }
         
         double farePerPerson = calculateFarePerPerson();
@@ -100,12 +288,43 @@ public class Trip {
                 
                 double soloCost = (tripDistanceKm * FUEL_COST_PER_KM) + BASE_FARE;
                 double savings = soloCost - farePerPerson;
-                rider.updateSavings(savings);
+                double credited = rider.updateSavings(savings);
+                if (credited > 0 && listener != null) listener.savingsCredited(this, rider, credited);
             }
         }
         
         tripStatus = "Completed";
-        System.out.println("Trip " + id + " completed successfully!");
+        log("Trip " + id + " completed successfully!");
+        if (listener != null) listener.statusChanged(this, "Active");
+        return true;
+    }
+
+    // putting back the status and passengers saved in a snapshot, before anyone is listening
+    public synchronized void restore(String status, List<User> savedPassengers) {
+        for (User rider : savedPassengers) {
+            if (passengerIds.add(rider.getId())) {
+                passengers.add(rider);
+                seatsTaken.incrementAndGet();
+                boarding.incrementAndGet();
+            }
+        }
+        if (!status.equals("Pending")) closeBoarding();
+        tripStatus = status;
+    }
+    
+    // putting back a passenger the journal recorded, whatever the trip's status is now, since
+    // a snapshot saved after the join may already hold the trip's later status
+    public synchronized void restorePassenger(User rider) {
+        if (!passengerIds.add(rider.getId())) return;
+        passengers.add(rider);
+        seatsTaken.incrementAndGet();
+        boarding.incrementAndGet();
+        if (listener != null) listener.passengerAdded(this, rider);
+    }
+    
+    // printing a message unless console output is turned off
+    private static void log(String message) {
+        if (verbose) System.out.println(message);
     }
     
     // calculating how much each passenger pays by splitting the total cost
@@ -113,12 +332,13 @@ public class Trip {
         double totalCost = BASE_FARE + (tripDistanceKm * FUEL_COST_PER_KM);
         
         // if no passengers yet show estimated fare assuming full car for best price
-        if (passengerCount == 0) {
+        int riders = getPassengerCount();
+        if (riders == 0) {
             return totalCost / driver.getCarCapacity();
         }
         
         // otherwise calculate based on actual passengers
-        return totalCost / passengerCount;
+        return totalCost / riders;
     }
     
     
@@ -136,11 +356,11 @@ public class Trip {
         sb.append(String.format("  Driver: %s (%s)\n",
                                driver.getName(), driver.getCarModel()));
         sb.append(String.format("  Seats: %d/%d available\n",
-                               (driver.getCarCapacity() - 1 - passengerCount),
+                               getSeatsLeft(),
                                (driver.getCarCapacity() - 1)));
         sb.append(String.format("  Fare per person: GHS %.2f\n", calculateFarePerPerson()));
         
-        if (passengerCount > 0) {
+        if (!passengers.isEmpty()) {
             sb.append("  Passengers:\n");
             for (User p : passengers) {
                 sb.append(String.format("    - %s\n", p.getName()));
@@ -0,0 +1,268 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+public class TripArchive implements Closeable {
+    // the cold tier: completed and long-past trips are appended here and dropped from the
+    // matcher, so the hot lists, maps and index only hold trips that can still change
+    //
+    // each record is [int length][int crc32c][trip id][driver id][origin name][origin area]
+    // [destination name][destination area][long departure minute][status][int passengers][passenger ids...]
+    // records are only ever appended; history is read back from the offsets indexed by user
+    public static final String DEFAULT_FILE = "ridelink.archive";
+
+    // no record comes near this; a bigger length means the file is damaged
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    private final Path file;
+    private final FileChannel channel;
+
+    // counts of archived trips, kept up to date so reports don't scan the file
+    private int tripCount;
+    private final HashMap<String, Integer> statusCounts = new HashMap<>();
+
+    // where each user's records start, and where the latest copy of each trip starts, so a
+    // user's history is read straight from those offsets instead of scanning the whole file
+    private final HashMap<String, ArrayList<Long>> offsetsByUser = new HashMap<>();
+    private final HashMap<String, Long> latestOffsets = new HashMap<>();
+
+    // opening an archive for appending, counting what it already holds and cutting off
+    // a torn record at the end
+    public TripArchive(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+
+        // the same trip can be archived twice if a crash lands between archiving it and
+        // journaling that it was, so counts go by id and reads keep the last copy
+        HashMap<String, String> statuses = new HashMap<>();
+        long goodLength;
+        try (InputStream in = Files.newInputStream(file)) {
+            goodLength = scan(in, (offset, record) -> {
+                String id = record.readUTF();
+                String driverId = record.readUTF();
+                for (int i = 0; i < 4; i++) record.readUTF();
+                record.readLong();
+                statuses.put(id, record.readUTF());
+                int count = record.readInt();
+                index(id, offset, driverId);
+                for (int i = 0; i < count; i++) index(id, offset, record.readUTF());
+            });
+        }
+        for (String status : statuses.values()) statusCounts.merge(status, 1, Integer::sum);
+        tripCount = latestOffsets.size();
+
+        if (goodLength < channel.size()) {
+            System.out.println("Archive ends with " + (channel.size() - goodLength) + " unreadable bytes, cutting them off");
+            channel.truncate(goodLength);
+        }
+        channel.position(goodLength);
+    }
+
+    // getting the file this archive appends to
+    public Path getFile() {
+        return file;
+    }
+
+    // counting archived trips, in total and with a given status
+    public synchronized int getTripCount() { return tripCount; }
+    public synchronized int getStatusCount(String status) { return statusCounts.getOrDefault(status, 0); }
+
+    // appending trips in one write and forcing them to disk before returning; a write that fails
+    // part way is cut back off, so the next append doesn't land behind a torn record
+    public synchronized void append(List<Trip> trips) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(trips.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        DataOutputStream record = new DataOutputStream(body);
+        CRC32C crc = new CRC32C();
+        String[] statuses = new String[trips.size()];
+        ArrayList<ArrayList<String>> userIds = new ArrayList<>(trips.size());
+        long start = channel.position();
+        long[] offsets = new long[trips.size()];
+        for (int t = 0; t < statuses.length; t++) {
+            Trip trip = trips.get(t);
+            offsets[t] = start + bytes.size();
+            ArrayList<String> ids = new ArrayList<>();
+            ids.add(trip.getDriver().getId());
+            body.reset();
+            record.writeUTF(trip.getId());
+            record.writeUTF(trip.getDriver().getId());
+            record.writeUTF(trip.getOrigin().getName());
+            record.writeUTF(trip.getOrigin().getArea());
+            record.writeUTF(trip.getDestination().getName());
+            record.writeUTF(trip.getDestination().getArea());
+            record.writeLong(TripIndex.epochMinute(trip.getDepartureTime()));
+            // counted below as written, even if the trip changes while this is saved
+            statuses[t] = trip.getTripStatus();
+            record.writeUTF(statuses[t]);
+            List<User> passengers = trip.getPassengers();
+            record.writeInt(passengers.size());
+            for (User passenger : passengers) {
+                record.writeUTF(passenger.getId());
+                ids.add(passenger.getId());
+            }
+            record.flush();
+            userIds.add(ids);
+
+            crc.reset();
+            byte[] array = body.toByteArray();
+            crc.update(array, 0, array.length);
+            out.writeInt(array.length);
+            out.writeInt((int) crc.getValue());
+            out.write(array);
+        }
+        out.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.position(start);
+            } catch (IOException truncateFailed) {
+                e.addSuppressed(truncateFailed);
+            }
+            throw e;
+        }
+
+        for (String status : statuses) {
+            statusCounts.merge(status, 1, Integer::sum);
+        }
+        for (int t = 0; t < offsets.length; t++) {
+            String id = trips.get(t).getId();
+            for (String userId : userIds.get(t)) index(id, offsets[t], userId);
+        }
+        tripCount += trips.size();
+    }
+
+    // noting that the record at this offset is the latest copy of a trip and involves a user
+    private void index(String tripId, long offset, String userId) {
+        latestOffsets.put(tripId, offset);
+        ArrayList<Long> offsets = offsetsByUser.computeIfAbsent(userId, key -> new ArrayList<>());
+        if (offsets.isEmpty() || offsets.get(offsets.size() - 1) != offset) offsets.add(offset);
+    }
+
+    // reading back every archived trip the user drove or rode in, oldest first; users are looked
+    // up by id and the trips are detached copies that nothing listens to; only the user's own
+    // records are read, and an older copy of a trip archived twice is skipped
+    public ArrayList<Trip> findByUser(String userId, Function<String, User> users) throws IOException {
+        ArrayList<Long> offsets;
+        synchronized (this) {
+            ArrayList<Long> indexed = offsetsByUser.get(userId);
+            if (indexed == null) return new ArrayList<>();
+            offsets = new ArrayList<>(indexed);
+        }
+
+        ArrayList<Trip> found = new ArrayList<>(offsets.size());
+        ByteBuffer header = ByteBuffer.allocate(8);
+        for (long offset : offsets) {
+            // positional reads don't move the channel, so appends can carry on meanwhile
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+            ByteBuffer body = ByteBuffer.allocate(header.getInt());
+            readFully(body, offset + 8);
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(body.array()));
+
+            String id = record.readUTF();
+            synchronized (this) {
+                if (latestOffsets.get(id) != offset) continue;
+            }
+            String driverId = record.readUTF();
+            String originName = record.readUTF();
+            String originArea = record.readUTF();
+            String destinationName = record.readUTF();
+            String destinationArea = record.readUTF();
+            long minute = record.readLong();
+            String status = record.readUTF();
+            int count = record.readInt();
+
+            User driver = users.apply(driverId);
+            if (!(driver instanceof Driver)) continue;
+            ArrayList<User> passengers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                User passenger = users.apply(record.readUTF());
+                if (passenger != null) passengers.add(passenger);
+            }
+            Trip trip = new Trip(id, (Driver) driver,
+                                 LocationRegistry.intern(originName, originArea),
+                                 LocationRegistry.intern(destinationName, destinationArea),
+                                 LocalDateTime.ofEpochSecond(minute * 60, 0, ZoneOffset.UTC));
+            trip.restore(status, passengers);
+            found.add(trip);
+        }
+        return found;
+    }
+
+    // filling a buffer from the file starting at a given offset
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Archive record at " + offset + " is cut short");
+            }
+        }
+    }
+
+    // closing the file; everything appended is already on disk
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // reading records until the end of the file or the first one that is torn or corrupt,
+    // returning how many bytes of good records there were
+    private static long scan(InputStream stream, RecordReader reader) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+        CRC32C crc = new CRC32C();
+        long goodLength = 0;
+        while (true) {
+            int length;
+            int checksum;
+            byte[] body;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(body, 0, length);
+            if ((int) crc.getValue() != checksum) break;
+
+            reader.read(goodLength, new DataInputStream(new ByteArrayInputStream(body)));
+            goodLength += 8 + length;
+        }
+        return goodLength;
+    }
+
+    // handling the fields of one record, given the offset it starts at
+    private interface RecordReader {
+        void read(long offset, DataInputStream record) throws IOException;
+    }
+}
@@ -0,0 +1,103 @@
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class TripIndex {
+    // open trips grouped by route key, then ordered by departure minute inside each route
+    // readers never lock; writers lock one stripe per route key
+    private final ConcurrentHashMap<Long, ConcurrentSkipListMap<Long, CopyOnWriteArrayList<Trip>>> buckets;
+    private final Object[] stripes;
+
+    private static final int STRIPE_COUNT = 64;
+
+    // creating an empty index
+    public TripIndex() {
+        this.buckets = new ConcurrentHashMap<>();
+        this.stripes = new Object[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // adding a trip under every route key it can be matched by
+    public void add(Trip trip) {
+        long minute = epochMinute(trip.getDepartureTime());
+        for (long key : routeKeys(trip.getOrigin(), trip.getDestination())) {
+            synchronized (stripeFor(key)) {
+                CopyOnWriteArrayList<Trip> slot = buckets.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>())
+                                                         .computeIfAbsent(minute, m -> new CopyOnWriteArrayList<>());
+                slot.addIfAbsent(trip);
+            }
+        }
+    }
+
+    // removing a trip from every bucket it was added to
+    public void remove(Trip trip) {
+        long minute = epochMinute(trip.getDepartureTime());
+        for (long key : routeKeys(trip.getOrigin(), trip.getDestination())) {
+            ConcurrentSkipListMap<Long, CopyOnWriteArrayList<Trip>> byTime = buckets.get(key);
+            if (byTime == null) continue;
+            synchronized (stripeFor(key)) {
+                CopyOnWriteArrayList<Trip> slot = byTime.get(minute);
+                if (slot == null) continue;
+                slot.remove(trip);
+                if (slot.isEmpty()) byTime.remove(minute);
+            }
+        }
+    }
+
+    // collecting trips on a matching route that depart between the two minutes (inclusive)
+    public ArrayList<Trip> candidates(Location origin, Location destination,
+                                      long fromMinute, long toMinute) {
+        LinkedHashSet<Trip> found = new LinkedHashSet<>();
+        for (long key : routeKeys(origin, destination)) {
+            ConcurrentSkipListMap<Long, CopyOnWriteArrayList<Trip>> byTime = buckets.get(key);
+            if (byTime == null) continue;
+            for (CopyOnWriteArrayList<Trip> slot : byTime.subMap(fromMinute, true, toMinute, true).values()) {
+                found.addAll(slot);
+            }
+        }
+        ArrayList<Trip> result = new ArrayList<>(found);
+        result.sort(Comparator.comparing(Trip::getDepartureTime));
+        return result;
+    }
+
+    // picking the lock that guards writes to one route key
+    private Object stripeFor(long key) {
+        return stripes[(int) ((key ^ (key >>> 32)) & (STRIPE_COUNT - 1))];
+    }
+
+    // turning a departure time into whole minutes so it can be used as a sort key
+    public static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    // building the four area/name combinations that Location.locationsMatch accepts,
+    // each packed as (origin token, destination token) where a token is an id tagged name or area
+    public static long[] routeKeys(Location origin, Location destination) {
+        long originArea = areaToken(origin);
+        long originName = nameToken(origin);
+        long destArea = areaToken(destination);
+        long destName = nameToken(destination);
+        return new long[] {
+            (originArea << 32) | destArea,
+            (originArea << 32) | destName,
+            (originName << 32) | destArea,
+            (originName << 32) | destName
+        };
+    }
+
+    // tagging ids so a name id never collides with an area id
+    private static long areaToken(Location location) {
+        return ((long) location.getAreaId() << 1) & 0xFFFFFFFFL;
+    }
+
+    private static long nameToken(Location location) {
+        return (((long) location.getNameId() << 1) | 1) & 0xFFFFFFFFL;
+    }
+}
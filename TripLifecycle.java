@@ -0,0 +1,68 @@
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TripLifecycle {
+    // moving trips along by the clock instead of waiting for the driver to press a button:
+    //   at departure       boarding closes; a trip with riders becomes Active, one nobody booked Expired
+    //   after the drive    an Active trip is completed, crediting its riders' savings
+    // every trip has one timeout on a hierarchical timing wheel keyed on its departure time,
+    // so there is no thread per trip and nothing scans the trip list
+    private static final double AVERAGE_SPEED_KMH = 20.0;
+
+    // transitions are journaled, so several run at once and share each fsync
+    private static final int WORKERS = 16;
+
+    private final RideLinkMatcher system;
+    private final ExecutorService workers;
+    private final HierarchicalTimingWheel wheel;
+
+    // starting the wheel and the threads that run the transitions
+    public TripLifecycle(RideLinkMatcher system) {
+        this.system = system;
+        this.workers = Executors.newFixedThreadPool(WORKERS, task -> {
+            Thread thread = new Thread(task, "ridelink-lifecycle-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.wheel = new HierarchicalTimingWheel("ridelink-lifecycle", 1000, workers);
+    }
+
+    // scheduling a trip's departure; trips that already left are handled on the next tick
+    public void schedule(Trip trip) {
+        wheel.scheduleAt(() -> depart(trip), toMillis(trip.getDepartureTime()));
+    }
+
+    // stopping the wheel; transitions already handed to the workers still run
+    public void stop() {
+        wheel.stop();
+        workers.shutdown();
+    }
+
+    // how long a trip is expected to take, from its distance
+    public static long expectedMinutes(Trip trip) {
+        return (long) Math.ceil(trip.getTripDistanceKm() / AVERAGE_SPEED_KMH * 60);
+    }
+
+    // closing boarding, then scheduling the arrival of a trip that set off
+    private void depart(Trip trip) {
+        if (system.getTripById(trip.getId()) != trip) return;
+        if (trip.depart().equals("Active")) {
+            long arrival = toMillis(trip.getDepartureTime()) + expectedMinutes(trip) * 60_000;
+            wheel.scheduleAt(() -> arrive(trip), arrival);
+        }
+    }
+
+    // completing a trip that is still under way when it should have arrived
+    private void arrive(Trip trip) {
+        if (system.getTripById(trip.getId()) != trip) return;
+        if (trip.getTripStatus().equals("Active")) {
+            trip.completeTrip();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,13 @@
+public interface TripListener {
+    // called after a rider has been added to the trip
+    void passengerAdded(Trip trip, User rider);
+    
+    // called after a seat hold was taken or given back
+    void seatsChanged(Trip trip);
+    
+    // called after the trip status changed, with the status it had before
+    void statusChanged(Trip trip, String previousStatus);
+    
+    // called after completing the trip credited a rider's savings
+    void savingsCredited(Trip trip, Rider rider, double amount);
+}